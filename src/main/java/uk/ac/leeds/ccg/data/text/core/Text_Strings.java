@@ -24,6 +24,12 @@ import uk.ac.leeds.ccg.generic.core.Generic_Strings;
 public class Text_Strings extends Generic_Strings {
     
     public static final String s_LexisNexis = "LexisNexis";
+
+    public static final String s_Articles = "Articles";
+
+    public static final String s_Index = "Index";
+
+    public static final String s_Results = "Results";
     
     public Text_Strings(){}
     
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.io;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * For finding the files of a corpus on disk. The corpus is a directory of
+ * directories of files, as for an unpacked LexisNexis download. Directories
+ * are listed using {@link DirectoryStream}s with glob filtering so only the
+ * names of the files wanted are ever returned.
+ */
+public class Text_Corpus {
+
+    private Text_Corpus() {
+    }
+
+    /**
+     * Gets the files in the directories in dir with names matching glob.
+     *
+     * @param dir The directory of directories.
+     * @param glob The glob for the names of the files to get (see
+     * {@link java.nio.file.FileSystem#getPathMatcher(String)}), for example
+     * {@code "*{htm,HTML}"}.
+     * @return The files keyed by directory name, in the order the directories
+     * and files are listed. The id of each is the name of the directory it is
+     * in followed by "/" and its name.
+     * @throws IOException If encountered.
+     */
+    public static LinkedHashMap<String, ArrayList<Text_Source>> getFiles(
+            Path dir, String glob) throws IOException {
+        LinkedHashMap<String, ArrayList<Text_Source>> r
+                = new LinkedHashMap<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir,
+                Files::isDirectory)) {
+            for (Path d : ds) {
+                String name = d.getFileName().toString();
+                ArrayList<Text_Source> fs = new ArrayList<>();
+                try (DirectoryStream<Path> ds2 = Files.newDirectoryStream(d,
+                        glob)) {
+                    for (Path p : ds2) {
+                        fs.add(new Text_FileSource(p, name + "/"
+                                + p.getFileName()));
+                    }
+                }
+                r.put(name, fs);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * For balancing the load when files are processed in parallel by workers
+     * that each take the next file when they are done: if the largest files
+     * are taken first, the last files to be taken are small and the workers
+     * finish at about the same time.
+     *
+     * @param files The files.
+     * @return A copy of files ordered by length with the largest first. Files
+     * of the same length are in the same order as in files.
+     */
+    public static ArrayList<Text_Source> sortLargestFirst(
+            List<Text_Source> files) {
+        ArrayList<Text_Source> r = new ArrayList<>(files);
+        long[] lengths = new long[r.size()];
+        ArrayList<Integer> order = new ArrayList<>(r.size());
+        for (int i = 0; i < lengths.length; i++) {
+            lengths[i] = r.get(i).length();
+            order.add(i);
+        }
+        order.sort(Comparator.comparingLong((Integer i) -> -lengths[i]));
+        for (int i = 0; i < lengths.length; i++) {
+            r.set(i, files.get(order.get(i)));
+        }
+        return r;
+    }
+}
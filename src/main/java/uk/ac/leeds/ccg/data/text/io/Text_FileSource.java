@@ -0,0 +1,79 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A {@link Text_Source} that is a file on disk. As for {@link java.io.File},
+ * the length and last modified time are 0 if they cannot be read.
+ */
+public class Text_FileSource extends Text_Source {
+
+    /**
+     * The path of the file.
+     */
+    final Path path;
+
+    /**
+     * Create a new instance.
+     *
+     * @param path The path of the file.
+     * @param id The id (see {@link Text_Source}).
+     */
+    public Text_FileSource(Path path, String id) {
+        super(id);
+        this.path = path;
+    }
+
+    /**
+     * @return The path of the file.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public long length() {
+        try {
+            return Files.size(path);
+        } catch (IOException ex) {
+            return 0L;
+        }
+    }
+
+    @Override
+    public long lastModified() {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException ex) {
+            return 0L;
+        }
+    }
+
+    @Override
+    public InputStream newInputStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public byte[] readAllBytes() throws IOException {
+        return Files.readAllBytes(path);
+    }
+}
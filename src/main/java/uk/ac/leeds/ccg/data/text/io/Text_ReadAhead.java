@@ -0,0 +1,267 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.io;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * For reading files into memory ahead of them being processed, so that the
+ * reading of the next files overlaps the processing of the current ones.
+ * This helps most where the files are on network storage, where reading a
+ * file while processing is waiting for it leaves the processors idle.
+ *
+ * The files are read in the order given by a number of background threads
+ * with at most window files read or being read and not yet released. The
+ * files should be processed in about the same order and each should be
+ * released with {@link #release(Text_Source)} once processed, which lets the next
+ * file be read. A file that is not read ahead is read directly.
+ *
+ * Alternatively, each file can be read by its own virtual thread (see
+ * {@link #newVirtualThreadExecutor()}) with the number of reads in progress
+ * limited by a semaphore. Then many more reads can be in progress than there
+ * are platform threads, which helps where each read is mostly waiting on the
+ * storage.
+ */
+public class Text_ReadAhead implements AutoCloseable {
+
+    /**
+     * The files to read in the order to read them.
+     */
+    final List<Text_Source> files;
+
+    /**
+     * The maximum number of files read or being read and not yet released.
+     */
+    final int window;
+
+    /**
+     * For reading the files.
+     */
+    final ExecutorService executor;
+
+    /**
+     * Whether executor was created by this and so is shut down on close.
+     */
+    final boolean ownExecutor;
+
+    /**
+     * For limiting the number of reads in progress or null.
+     */
+    final Semaphore reading;
+
+    /**
+     * The reads of the files that have not been released.
+     */
+    final ConcurrentHashMap<Text_Source, Future<byte[]>> reads
+            = new ConcurrentHashMap<>();
+
+    /**
+     * The index in files of the next file to read.
+     */
+    int next;
+
+    /**
+     * Create a new instance and start reading.
+     *
+     * @param files The files to read in the order to read them.
+     * @param window The maximum number of files read or being read and not
+     * yet released.
+     * @param threads The number of threads to read with.
+     */
+    public Text_ReadAhead(List<Text_Source> files, int window, int threads) {
+        this.files = new ArrayList<>(files);
+        this.window = window;
+        this.executor = Executors.newFixedThreadPool(threads, (Runnable r) -> {
+            Thread t = new Thread(r, "Text_ReadAhead");
+            t.setDaemon(true);
+            return t;
+        });
+        ownExecutor = true;
+        reading = null;
+        readAhead();
+    }
+
+    /**
+     * Create a new instance that reads using executor and start reading.
+     * Each file is read in a separate task, so with an executor that starts a
+     * virtual thread for each task, each file is read in its own virtual
+     * thread.
+     *
+     * @param files The files to read in the order to read them.
+     * @param window The maximum number of files read or being read and not
+     * yet released.
+     * @param executor For reading the files. This is not shut down on close.
+     * @param maxReads The maximum number of files being read at once.
+     */
+    public Text_ReadAhead(List<Text_Source> files, int window,
+            ExecutorService executor, int maxReads) {
+        this.files = new ArrayList<>(files);
+        this.window = window;
+        this.executor = executor;
+        ownExecutor = false;
+        reading = new Semaphore(maxReads);
+        readAhead();
+    }
+
+    /**
+     * @return An executor that starts a new virtual thread for each task or
+     * null if virtual threads are not supported by the Java runtime (they are
+     * from Java 21). The executor should be shut down when no longer needed.
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod(
+                    "newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Starts reading files until there are window files read or being read.
+     */
+    synchronized void readAhead() {
+        while (next < files.size() && reads.size() < window) {
+            Text_Source f = files.get(next);
+            reads.put(f, executor.submit(() -> {
+                if (reading == null) {
+                    return f.readAllBytes();
+                }
+                reading.acquire();
+                try {
+                    return f.readAllBytes();
+                } finally {
+                    reading.release();
+                }
+            }));
+            next++;
+        }
+    }
+
+    /**
+     * @param f The file.
+     * @return The content of f if it is being read ahead, waiting for it to
+     * be read if necessary, or null otherwise.
+     * @throws IOException If encountered reading f.
+     */
+    byte[] get(Text_Source f) throws IOException {
+        Future<byte[]> read = reads.get(f);
+        if (read == null) {
+            return null;
+        }
+        try {
+            return read.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(f.toString());
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    /**
+     * @param f The file.
+     * @return The content of f from memory if it is being read ahead or read
+     * from f otherwise.
+     * @throws IOException If encountered.
+     */
+    public byte[] getBytes(Text_Source f) throws IOException {
+        byte[] b = get(f);
+        if (b == null) {
+            return f.readAllBytes();
+        }
+        return b;
+    }
+
+    /**
+     * @param f The file.
+     * @return An input stream for reading f from memory if it is being read
+     * ahead or from f otherwise (see
+     * {@link Text_Source#newInputStream()}).
+     * @throws IOException If encountered.
+     */
+    public InputStream newInputStream(Text_Source f) throws IOException {
+        byte[] b = get(f);
+        if (b == null) {
+            return f.newInputStream();
+        }
+        return new ByteArrayInputStream(b);
+    }
+
+    /**
+     * @param f The file.
+     * @return A reader for reading f as UTF-8 from memory if it is being read
+     * ahead or from f otherwise (see
+     * {@link Text_Source#newBufferedReader()}). In either case
+     * malformed input is replaced.
+     * @throws IOException If encountered.
+     */
+    public BufferedReader newBufferedReader(Text_Source f) throws IOException {
+        byte[] b = get(f);
+        if (b == null) {
+            return f.newBufferedReader();
+        }
+        return new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(b), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Releases the memory holding f if it was read ahead and starts reading
+     * the next file.
+     *
+     * @param f The file that has been processed.
+     */
+    public void release(Text_Source f) {
+        Future<byte[]> read = reads.remove(f);
+        if (read != null) {
+            read.cancel(false);
+            readAhead();
+        }
+    }
+
+    /**
+     * Stops reading and releases the memory holding any files read.
+     */
+    @Override
+    public synchronized void close() {
+        next = files.size();
+        if (ownExecutor) {
+            executor.shutdownNow();
+        } else {
+            for (Future<byte[]> read : reads.values()) {
+                read.cancel(true);
+            }
+        }
+        reads.clear();
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An input file to be processed, such as an HTML file in a LexisNexis
+ * download, which may be on disk (see {@link Text_FileSource}) or in a zip
+ * archive (see {@link Text_ZipEntrySource}).
+ *
+ * Each source has an id that is a relative path made of names separated by
+ * "/" that identifies it among all the inputs. The id is the same from one
+ * run to the next, so it is used to key what is stored for the source, such
+ * as article stores, index entries and cached results. Sources are equal if
+ * their ids are equal.
+ */
+public abstract class Text_Source {
+
+    /**
+     * The id.
+     */
+    final String id;
+
+    /**
+     * Create a new instance.
+     *
+     * @param id The id. This must be a relative path of names separated by
+     * "/" (see {@link #isValidId(String)}).
+     */
+    protected Text_Source(String id) {
+        if (!isValidId(id)) {
+            throw new IllegalArgumentException("Invalid id " + id);
+        }
+        this.id = id;
+    }
+
+    /**
+     * @param id The id.
+     * @return true if id is a relative path of one or more non-empty names
+     * separated by "/" and none of the names are "." or "..". Such an id can
+     * be resolved against a directory to give a path in that directory.
+     */
+    public static boolean isValidId(String id) {
+        if (id.isEmpty() || id.indexOf('\\') != -1 || id.indexOf(':') != -1) {
+            return false;
+        }
+        for (String name : id.split("/", -1)) {
+            if (name.isEmpty() || name.equals(".") || name.equals("..")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The id.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return The name, which is the last name in the id.
+     */
+    public String getName() {
+        return id.substring(id.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * @return The name of the directory the source is in, which is the name
+     * before the last in the id, or the empty string if there is none.
+     */
+    public String getDirName() {
+        int i = id.lastIndexOf('/');
+        if (i == -1) {
+            return "";
+        }
+        return id.substring(id.lastIndexOf('/', i - 1) + 1, i);
+    }
+
+    /**
+     * @return The length in bytes.
+     */
+    public abstract long length();
+
+    /**
+     * @return The last modified time in milliseconds since the epoch.
+     */
+    public abstract long lastModified();
+
+    /**
+     * @return An input stream for reading the content.
+     * @throws IOException If encountered.
+     */
+    public abstract InputStream newInputStream() throws IOException;
+
+    /**
+     * @return The content.
+     * @throws IOException If encountered.
+     */
+    public byte[] readAllBytes() throws IOException {
+        try (InputStream is = newInputStream()) {
+            return is.readAllBytes();
+        }
+    }
+
+    /**
+     * @return A reader for reading the content as UTF-8. As for jsoup parsing
+     * a file, malformed input is replaced rather than causing an IOException.
+     * @throws IOException If encountered.
+     */
+    public BufferedReader newBufferedReader() throws IOException {
+        return new BufferedReader(new InputStreamReader(newInputStream(),
+                StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return id.equals(((Text_Source) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return id;
+    }
+}
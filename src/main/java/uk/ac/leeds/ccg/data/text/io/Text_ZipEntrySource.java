@@ -0,0 +1,188 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A {@link Text_Source} that is an entry in a zip archive, such as an HTML
+ * file in a LexisNexis download, so that it can be processed without the
+ * archive being unpacked. The id is the name of the archive followed by "/"
+ * and the name of the entry, so entries with the same name in different
+ * archives have different ids. The length and last modified time are those
+ * of the entry.
+ *
+ * Entries can be read concurrently from the same archive and from different
+ * archives, so files in archives can be parsed in parallel.
+ */
+public class Text_ZipEntrySource extends Text_Source {
+
+    /**
+     * The archive.
+     */
+    final ZipFile zip;
+
+    /**
+     * The entry in the archive.
+     */
+    final ZipEntry entry;
+
+    /**
+     * Create a new instance.
+     *
+     * @param zip The archive.
+     * @param entry The entry.
+     */
+    public Text_ZipEntrySource(ZipFile zip, ZipEntry entry) {
+        super(getId(zip, entry));
+        this.zip = zip;
+        this.entry = entry;
+    }
+
+    /**
+     * @param zip The archive.
+     * @param entry The entry.
+     * @return The id for entry in zip.
+     */
+    static String getId(ZipFile zip, ZipEntry entry) {
+        return Paths.get(zip.getName()).getFileName() + "/" + entry.getName();
+    }
+
+    @Override
+    public long length() {
+        return entry.getSize();
+    }
+
+    @Override
+    public long lastModified() {
+        return entry.getTime();
+    }
+
+    @Override
+    public InputStream newInputStream() throws IOException {
+        return zip.getInputStream(entry);
+    }
+
+    /**
+     * Opens the zip archives in dir with names starting with prefix.
+     *
+     * @param dir The directory.
+     * @param prefix The start of the names of the archives.
+     * @return The archives in order of name, which are empty if there are
+     * none. These should be closed when no longer needed.
+     * @throws IOException If encountered.
+     */
+    public static List<ZipFile> open(Path dir, String prefix)
+            throws IOException {
+        ArrayList<Path> paths = new ArrayList<>();
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir,
+                    prefix + "*.zip")) {
+                for (Path p : ds) {
+                    paths.add(p);
+                }
+            }
+        }
+        paths.sort(null);
+        ArrayList<ZipFile> r = new ArrayList<>();
+        try {
+            for (Path p : paths) {
+                r.add(new ZipFile(p.toFile()));
+            }
+        } catch (IOException ex) {
+            close(r);
+            throw ex;
+        }
+        return r;
+    }
+
+    /**
+     * Closes zips.
+     *
+     * @param zips The archives to close.
+     * @throws IOException If encountered.
+     */
+    public static void close(List<ZipFile> zips) throws IOException {
+        IOException e = null;
+        for (ZipFile zip : zips) {
+            try {
+                zip.close();
+            } catch (IOException ex) {
+                e = ex;
+            }
+        }
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the files in zips with names ending with any of suffixes, grouped
+     * by the name of the directory they are in within the archives. Files in
+     * directories with the same name in different archives are in the same
+     * group, but have different ids.
+     *
+     * @param zips The archives.
+     * @param suffixes The ends of the names of the files to get.
+     * @return The files keyed by directory name, in the order the directories
+     * and files are in the archives.
+     */
+    public static LinkedHashMap<String, ArrayList<Text_Source>> getFiles(
+            List<ZipFile> zips, String... suffixes) {
+        LinkedHashMap<String, ArrayList<Text_Source>> r
+                = new LinkedHashMap<>();
+        for (ZipFile zip : zips) {
+            Enumeration<? extends ZipEntry> e = zip.entries();
+            while (e.hasMoreElements()) {
+                ZipEntry entry = e.nextElement();
+                /**
+                 * Entries with names that are not relative paths are skipped
+                 * so that what is stored for an entry is not written outside
+                 * the directory it is stored in.
+                 */
+                if (entry.isDirectory()
+                        || !isValidId(getId(zip, entry))) {
+                    continue;
+                }
+                Text_ZipEntrySource f = new Text_ZipEntrySource(zip, entry);
+                for (String suffix : suffixes) {
+                    if (f.getName().endsWith(suffix)) {
+                        String dir = f.getDirName();
+                        ArrayList<Text_Source> fs = r.get(dir);
+                        if (fs == null) {
+                            fs = new ArrayList<>();
+                            r.put(dir, fs);
+                        }
+                        fs.add(f);
+                        break;
+                    }
+                }
+            }
+        }
+        return r;
+    }
+}
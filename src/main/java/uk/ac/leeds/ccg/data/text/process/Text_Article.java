@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.process;
+
+import java.time.LocalDate;
+
+/**
+ * For holding the details of an article extracted from a LexisNexis HTML file.
+ * The title and body are as accumulated by {@link Text_ArticleParser} (with
+ * punctuation spaced out and double spaces removed) and are what terms are
+ * counted in.
+ */
+public class Text_Article {
+
+    /**
+     * The name of the paper.
+     */
+    final String paper;
+
+    /**
+     * The date.
+     */
+    final LocalDate date;
+
+    /**
+     * The title.
+     */
+    final String title;
+
+    /**
+     * The section.
+     */
+    final String section;
+
+    /**
+     * The length.
+     */
+    final String length;
+
+    /**
+     * The body.
+     */
+    final String body;
+
+    /**
+     * Create a new instance.
+     *
+     * @param paper The name of the paper.
+     * @param date The date.
+     * @param title The title.
+     * @param section The section.
+     * @param length The length.
+     * @param body The body.
+     */
+    public Text_Article(String paper, LocalDate date, String title,
+            String section, String length, String body) {
+        this.paper = paper;
+        this.date = date;
+        this.title = title;
+        this.section = section;
+        this.length = length;
+        this.body = body;
+    }
+
+    /**
+     * @return The name of the paper.
+     */
+    public String getPaper() {
+        return paper;
+    }
+
+    /**
+     * @return The date.
+     */
+    public LocalDate getDate() {
+        return date;
+    }
+
+    /**
+     * @return The title.
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * @return The section.
+     */
+    public String getSection() {
+        return section;
+    }
+
+    /**
+     * @return The length.
+     */
+    public String getLength() {
+        return length;
+    }
+
+    /**
+     * @return The body.
+     */
+    public String getBody() {
+        return body;
+    }
+}
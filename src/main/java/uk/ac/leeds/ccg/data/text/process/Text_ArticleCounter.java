@@ -0,0 +1,202 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.process;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import uk.ac.leeds.ccg.data.text.process.Text_Processor2.DateOutlineDetails;
+import uk.ac.leeds.ccg.data.text.term.Text_TermMatcher;
+import uk.ac.leeds.ccg.data.text.term.Text_TermSet;
+import uk.ac.leeds.ccg.generic.time.Generic_LocalDateRange;
+
+/**
+ * For counting the terms in articles and adding the counts to results for
+ * each time period that contains each article. Counting the terms in an
+ * article ({@link #getTermCounts(Text_Article)}) is separate from adding the
+ * counts to results ({@link #add(Text_Article, int[], Text_PartialResult,
+ * List)}) so that the counting can be done by any thread and the adding
+ * by whichever thread holds the results. Instances are immutable and so can
+ * be shared by threads.
+ */
+public class Text_ArticleCounter {
+
+    /**
+     * For matching terms.
+     */
+    final Text_TermMatcher matcher;
+
+    /**
+     * The id of the headline term or -1 if it is not a term.
+     */
+    final int headlineTermId;
+
+    /**
+     * The number of time periods.
+     */
+    final int nr;
+
+    /**
+     * The start dates of the time periods.
+     */
+    final LocalDate[] startDates;
+
+    /**
+     * The end dates of the time periods.
+     */
+    final LocalDate[] endDates;
+
+    /**
+     * Create a new instance.
+     *
+     * @param termSet The compiled terms.
+     * @param dates The date ranges of the time periods.
+     * @param headlineTerm The headline term.
+     */
+    public Text_ArticleCounter(Text_TermSet termSet,
+            ArrayList<Generic_LocalDateRange> dates, String headlineTerm) {
+        matcher = termSet.getMatcher();
+        headlineTermId = termSet.getId(headlineTerm);
+        nr = dates.size();
+        startDates = new LocalDate[nr];
+        endDates = new LocalDate[nr];
+        for (int r = 0; r < nr; r++) {
+            startDates[r] = dates.get(r).getStart();
+            endDates[r] = dates.get(r).getEnd();
+        }
+    }
+
+    /**
+     * @param ld The date.
+     * @return true if ld is in at least one time period.
+     */
+    public boolean inPeriods(LocalDate ld) {
+        for (int r = 0; r < nr; r++) {
+            // Filter for a given time period
+            if (ld.isAfter(startDates[r]) && ld.isBefore(endDates[r])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The terms are only counted if the article is in at least one time
+     * period.
+     *
+     * @param a The article.
+     * @return The count for each term in the body of a or null if a is not in
+     * any time period.
+     */
+    public int[] getTermCounts(Text_Article a) {
+        if (!inPeriods(a.date)) {
+            return null;
+        }
+        return matcher.getTermCounts(a.body);
+    }
+
+    /**
+     * @return A new set of headlines for each time period.
+     */
+    public ArrayList<TreeSet<DateOutlineDetails>> newHeadlines() {
+        ArrayList<TreeSet<DateOutlineDetails>> r = new ArrayList<>(nr);
+        for (int i = 0; i < nr; i++) {
+            r.add(new TreeSet<>());
+        }
+        return r;
+    }
+
+    /**
+     * Adds the counts for a to result for each time period that contains a.
+     * Details of articles on Saturdays that contain the headline term are
+     * added to headlines.
+     *
+     * @param a The article.
+     * @param termCounts The counts for a (see
+     * {@link #getTermCounts(Text_Article)}).
+     * @param result The results to add to.
+     * @param headlines The headlines for each time period to add to.
+     */
+    public void add(Text_Article a, int[] termCounts,
+            Text_PartialResult result,
+            List<TreeSet<DateOutlineDetails>> headlines) {
+        if (termCounts == null) {
+            return;
+        }
+        LocalDate ld = a.date;
+        DayOfWeek day = ld.getDayOfWeek();
+        for (int r = 0; r < nr; r++) {
+            // Filter for a given time period
+            if (ld.isAfter(startDates[r]) && ld.isBefore(endDates[r])) {
+                result.addArticle(r, a.paper, day, termCounts);
+                /**
+                 * Store DateHeadline's for those articles on Saturdays that
+                 * contain the term headlineTerm.
+                 */
+                if (headlineTermId != -1) {
+                    if (termCounts[headlineTermId] > 0) {
+                        if (day.equals(DayOfWeek.SATURDAY)) {
+                            headlines.get(r).add(new DateOutlineDetails(ld,
+                                    a.section, a.length, a.title));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds one to the number of articles in the paper of a to counts for each
+     * time period that contains a. This can be called by a number of threads
+     * at once for the same counts without holding a lock if counts has a
+     * stripe for each thread (see {@link Text_PaperDayCounts}).
+     *
+     * @param a The article.
+     * @param termCounts The counts for a (see
+     * {@link #getTermCounts(Text_Article)}).
+     * @param counts The counts to add to.
+     */
+    public void addPaperCounts(Text_Article a, int[] termCounts,
+            Text_PaperDayCounts counts) {
+        if (termCounts == null) {
+            return;
+        }
+        LocalDate ld = a.date;
+        DayOfWeek day = ld.getDayOfWeek();
+        for (int r = 0; r < nr; r++) {
+            // Filter for a given time period
+            if (ld.isAfter(startDates[r]) && ld.isBefore(endDates[r])) {
+                counts.add(r, a.paper, day);
+            }
+        }
+    }
+
+    /**
+     * Adds headlines to result for file.
+     *
+     * @param result The results.
+     * @param file The index of the file.
+     * @param headlines The headlines for each time period.
+     */
+    public void addHeadlines(Text_PartialResult result, int file,
+            List<TreeSet<DateOutlineDetails>> headlines) {
+        for (int r = 0; r < nr; r++) {
+            result.addHeadlines(r, file, headlines.get(r));
+        }
+    }
+}
@@ -0,0 +1,1138 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.process;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import uk.ac.leeds.ccg.data.text.io.Text_Source;
+import uk.ac.leeds.ccg.data.text.process.Text_Processor2.DateOutlineDetails;
+import uk.ac.leeds.ccg.data.text.term.Text_TermMatcher;
+import uk.ac.leeds.ccg.data.text.term.Text_TermSet;
+import uk.ac.leeds.ccg.generic.time.Generic_LocalDateRange;
+
+/**
+ * A positional inverted index of the articles extracted from a set of
+ * LexisNexis HTML files. For each token in the article bodies the index has a
+ * posting list of the ids of the articles the token appears in, the number of
+ * times it appears in each and the positions at which it appears. For each
+ * article the index has the file it is from, the paper, the date, the title,
+ * the section and the length. Counts for any term list and any date ranges
+ * can then be produced from the index without going through the article
+ * bodies again (see {@link #count(Text_TermSet, ArrayList, int)}). Exact
+ * phrase and proximity queries can also be answered (see
+ * {@link #countPhrase(String)} and {@link #countNear(String, String, int)}).
+ *
+ * Article bodies are tokenized by splitting on spaces. The position of a
+ * token is the number of spaces before it, so tokens at adjacent positions
+ * are separated by a single space. Terms are counted as substrings of the
+ * body (see {@link Text_TermMatcher}). A pattern with no spaces can only
+ * match within a token, so the count of such a pattern in an article is the
+ * sum over the tokens in the article of the count of the pattern in the token
+ * multiplied by the frequency of the token. A pattern with spaces matches at
+ * a position where the token ends with the first word of the pattern, the
+ * tokens at the following positions are the middle words and the token at
+ * the last position starts with the last word. Such matches are found by
+ * intersecting position lists and are counted without overlaps in the same
+ * way as for the text (see {@link #canCount(Text_TermSet)}).
+ *
+ * Article ids are assigned in the order of the files and then in the order of
+ * the articles in each file, so counts and headlines come out in the same
+ * order as when the files are parsed.
+ */
+public class Text_ArticleIndex {
+
+    /**
+     * For identifying an index file.
+     */
+    static final int MAGIC = 0x54584149;
+
+    /**
+     * The version of the index format.
+     */
+    static final int VERSION = 3;
+
+    /**
+     * The names of the papers the articles were extracted for.
+     */
+    final List<String> papers;
+
+    /**
+     * The number of files.
+     */
+    final int numberOfFiles;
+
+    /**
+     * For each article, the index of the file it is from.
+     */
+    final int[] articleFiles;
+
+    /**
+     * For each article, the index of the paper in papers.
+     */
+    final int[] articlePapers;
+
+    /**
+     * For each article, the date as an epoch day or
+     * {@link Text_ArticleStore#NO_DATE}.
+     */
+    final long[] articleDates;
+
+    /**
+     * For each article, the title.
+     */
+    final String[] titles;
+
+    /**
+     * For each article, the section.
+     */
+    final String[] sections;
+
+    /**
+     * For each article, the length.
+     */
+    final String[] lengths;
+
+    /**
+     * For each article, the number of chars in the body.
+     */
+    final int[] bodyLengths;
+
+    /**
+     * The tokens.
+     */
+    final String[] tokens;
+
+    /**
+     * For each token, the position in buffer of its posting list. A posting
+     * list is the number of postings, the number of ints in the postings and
+     * then for each posting: the article id; the frequency; and for each
+     * occurrence the position and the offset of the first char.
+     */
+    final int[] postings;
+
+    /**
+     * The index file mapped into memory.
+     */
+    final MappedByteBuffer buffer;
+
+    /**
+     * Create a new instance by reading from the index file.
+     *
+     * @param papers The names of the papers.
+     * @param numberOfFiles The number of files.
+     * @param b The index file mapped into memory positioned at the articles.
+     */
+    private Text_ArticleIndex(List<String> papers, int numberOfFiles,
+            MappedByteBuffer b) {
+        this.papers = papers;
+        this.numberOfFiles = numberOfFiles;
+        this.buffer = b;
+        byte[] buf = new byte[8192];
+        int na = b.getInt();
+        articleFiles = new int[na];
+        articlePapers = new int[na];
+        articleDates = new long[na];
+        titles = new String[na];
+        sections = new String[na];
+        lengths = new String[na];
+        bodyLengths = new int[na];
+        for (int a = 0; a < na; a++) {
+            articleFiles[a] = b.getInt();
+            articlePapers[a] = b.getInt();
+            articleDates[a] = b.getLong();
+            buf = Text_ArticleStore.ensureCapacity(buf, b);
+            titles[a] = Text_ArticleStore.readString(b, buf);
+            buf = Text_ArticleStore.ensureCapacity(buf, b);
+            sections[a] = Text_ArticleStore.readString(b, buf);
+            buf = Text_ArticleStore.ensureCapacity(buf, b);
+            lengths[a] = Text_ArticleStore.readString(b, buf);
+            bodyLengths[a] = b.getInt();
+        }
+        int nt = b.getInt();
+        tokens = new String[nt];
+        postings = new int[nt];
+        for (int t = 0; t < nt; t++) {
+            buf = Text_ArticleStore.ensureCapacity(buf, b);
+            tokens[t] = Text_ArticleStore.readString(b, buf);
+            postings[t] = b.position();
+            b.getInt();
+            int ni = b.getInt();
+            b.position(b.position() + ni * 4);
+        }
+    }
+
+    /**
+     * Opens the index at path if it is current.
+     *
+     * @param path The index file.
+     * @param papers The names of the papers that the index must be for.
+     * @param files The files that the index must be for.
+     * @return The index or null if there is no index at path or if it is not
+     * an index of the current version for papers and for files as they are
+     * now.
+     * @throws IOException If encountered.
+     */
+    public static Text_ArticleIndex open(Path path, List<String> papers,
+            List<Text_Source> files) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = fc.size();
+            if (size < 12 || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer b = fc.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (b.getInt() != MAGIC || b.getInt() != VERSION
+                    || b.getInt((int) size - 4) != Text_ArticleStore.END) {
+                return null;
+            }
+            byte[] buf = new byte[8192];
+            String[] ps = new String[b.getInt()];
+            for (int i = 0; i < ps.length; i++) {
+                buf = Text_ArticleStore.ensureCapacity(buf, b);
+                ps[i] = Text_ArticleStore.readString(b, buf);
+            }
+            if (!Arrays.asList(ps).equals(papers)) {
+                return null;
+            }
+            int nf = b.getInt();
+            if (nf != files.size()) {
+                return null;
+            }
+            for (int f = 0; f < nf; f++) {
+                buf = Text_ArticleStore.ensureCapacity(buf, b);
+                String id = Text_ArticleStore.readString(b, buf);
+                long lastModified = b.getLong();
+                long length = b.getLong();
+                Text_Source file = files.get(f);
+                if (!id.equals(file.getId())
+                        || lastModified != file.lastModified()
+                        || length != file.length()) {
+                    return null;
+                }
+            }
+            return new Text_ArticleIndex(papers, nf, b);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException ex) {
+            throw new IOException("Corrupt article index " + path, ex);
+        }
+    }
+
+    /**
+     * @return The number of articles.
+     */
+    public int getNumberOfArticles() {
+        return articleFiles.length;
+    }
+
+    /**
+     * @return The number of distinct tokens.
+     */
+    public int getNumberOfTokens() {
+        return tokens.length;
+    }
+
+    /**
+     * @param a The article id.
+     * @return The name of the paper of the article.
+     */
+    public String getPaper(int a) {
+        return papers.get(articlePapers[a]);
+    }
+
+    /**
+     * @param a The article id.
+     * @return The date of the article or null if it has no date.
+     */
+    public LocalDate getDate(int a) {
+        return articleDates[a] == Text_ArticleStore.NO_DATE ? null
+                : LocalDate.ofEpochDay(articleDates[a]);
+    }
+
+    /**
+     * @param a The article id.
+     * @return The title of the article.
+     */
+    public String getTitle(int a) {
+        return titles[a];
+    }
+
+    /**
+     * @param range The date range.
+     * @return The ids of the articles with a date after the start and before
+     * the end of range, which are the articles that are counted for range.
+     */
+    public Text_Bitmap getArticles(Generic_LocalDateRange range) {
+        long start = range.getStart().toEpochDay();
+        long end = range.getEnd().toEpochDay();
+        Text_Bitmap r = new Text_Bitmap();
+        for (int a = 0; a < articleDates.length; a++) {
+            if (articleDates[a] != Text_ArticleStore.NO_DATE
+                    && articleDates[a] > start && articleDates[a] < end) {
+                r.add(a);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param paper The name of the paper.
+     * @return The ids of the articles from paper.
+     */
+    public Text_Bitmap getArticles(String paper) {
+        int p = papers.indexOf(paper);
+        Text_Bitmap r = new Text_Bitmap();
+        for (int a = 0; a < articlePapers.length; a++) {
+            if (articlePapers[a] == p) {
+                r.add(a);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param termSet The terms.
+     * @return true if the terms in termSet can be counted using the index.
+     * This is the case unless a pattern has two spaces together or is only a
+     * space.
+     */
+    public static boolean canCount(Text_TermSet termSet) {
+        Text_TermMatcher matcher = termSet.getMatcher();
+        for (int p = 0; p < matcher.getNumberOfPatterns(); p++) {
+            String s = matcher.getPattern(p);
+            if (s.contains("  ") || s.trim().isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param token The token.
+     * @return For each article id, the positions of token in the article in
+     * ascending order or null if token is not in the article.
+     */
+    IntList[] getPositions(String token) {
+        IntList[] r = new IntList[articleFiles.length];
+        int t = Arrays.binarySearch(tokens, token);
+        if (t >= 0) {
+            addPositions(t, r, false, 0);
+        }
+        return r;
+    }
+
+    /**
+     * Adds the positions of the token with index t to r.
+     *
+     * @param t The index of the token.
+     * @param r For each article id, the positions to add to.
+     * @param withOffset If true then each position is added after the offset
+     * of the first char of the occurrence plus offset.
+     * @param offset What is added to the offset of each occurrence.
+     */
+    void addPositions(int t, IntList[] r, boolean withOffset, int offset) {
+        int pos = postings[t];
+        int np = buffer.getInt(pos);
+        pos += 8;
+        for (int i = 0; i < np; i++) {
+            int a = buffer.getInt(pos);
+            int f = buffer.getInt(pos + 4);
+            pos += 8;
+            IntList ps = r[a];
+            if (ps == null) {
+                ps = new IntList();
+                r[a] = ps;
+            }
+            for (int j = 0; j < f; j++) {
+                if (withOffset) {
+                    ps.add(buffer.getInt(pos + 4) + offset);
+                }
+                ps.add(buffer.getInt(pos));
+                pos += 8;
+            }
+        }
+    }
+
+    /**
+     * Counts the occurrences of an exact phrase in each article. The phrase is
+     * split on spaces into words and an occurrence is where the tokens at
+     * consecutive positions are the words of the phrase.
+     *
+     * @param phrase The phrase.
+     * @return For each article id, the number of occurrences of phrase.
+     */
+    public int[] countPhrase(String phrase) {
+        String[] words = phrase.trim().split(" +");
+        int na = articleFiles.length;
+        int[] r = new int[na];
+        IntList[][] positions = new IntList[words.length][];
+        for (int w = 0; w < words.length; w++) {
+            positions[w] = getPositions(words[w]);
+        }
+        for (int a = 0; a < na; a++) {
+            if (!in(positions, a)) {
+                continue;
+            }
+            IntList ps = positions[0][a];
+            for (int i = 0; i < ps.size; i++) {
+                int p = ps.data[i];
+                boolean match = true;
+                for (int w = 1; w < words.length; w++) {
+                    if (!positions[w][a].contains(p + w)) {
+                        match = false;
+                        break;
+                    }
+                }
+                if (match) {
+                    r[a]++;
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Counts the occurrences of word1 within k words of word2 in each
+     * article. That is the number of positions of word1 for which word2 is at
+     * another position no more than k before or after.
+     *
+     * @param word1 The first word.
+     * @param word2 The second word.
+     * @param k The maximum distance between the words.
+     * @return For each article id, the number of occurrences of word1 near
+     * word2.
+     */
+    public int[] countNear(String word1, String word2, int k) {
+        int na = articleFiles.length;
+        int[] r = new int[na];
+        IntList[] ps1 = getPositions(word1);
+        IntList[] ps2 = getPositions(word2);
+        for (int a = 0; a < na; a++) {
+            if (ps1[a] == null || ps2[a] == null) {
+                continue;
+            }
+            IntList l1 = ps1[a];
+            IntList l2 = ps2[a];
+            int j = 0;
+            for (int i = 0; i < l1.size; i++) {
+                int p = l1.data[i];
+                while (j < l2.size && l2.data[j] < p - k) {
+                    j++;
+                }
+                for (int x = j; x < l2.size && l2.data[x] <= p + k; x++) {
+                    if (l2.data[x] != p) {
+                        r[a]++;
+                        break;
+                    }
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param positions Position lists.
+     * @param a An article id.
+     * @return true if all of the position lists have positions for a.
+     */
+    private static boolean in(IntList[][] positions, int a) {
+        for (IntList[] ps : positions) {
+            if (ps[a] == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the count of a pattern with spaces in each article to
+     * articlePatternCounts. The pattern is split into words. A match is at a
+     * position where: the token ends with the first word (or, if the pattern
+     * starts with a space, is the first word); the tokens at the following
+     * positions are the middle words; and the token at the last position
+     * starts with the last word (or, if the pattern ends with a space, is the
+     * last word). For a pattern of one word with a space only at the start,
+     * the token need only start with the word. Matches are then counted from
+     * the left by their char offsets in the same way that
+     * {@link Text_TermMatcher#getPatternCounts(CharSequence)} counts them.
+     *
+     * @param pattern The pattern.
+     * @param p The index of the pattern.
+     * @param np The number of patterns.
+     * @param articlePatternCounts For each article the pattern counts.
+     */
+    void countPattern(String pattern, int p, int np,
+            int[][] articlePatternCounts) {
+        boolean lead = pattern.startsWith(" ");
+        boolean trail = pattern.endsWith(" ");
+        String[] words = pattern.trim().split(" ");
+        int k = words.length;
+        int na = articleFiles.length;
+        String first = words[0];
+        String last = words[k - 1];
+        int pl = pattern.length();
+        IntList[][] positions = new IntList[k][];
+        positions[0] = new IntList[na];
+        if (k > 1) {
+            positions[k - 1] = new IntList[na];
+        }
+        for (int t = 0; t < tokens.length; t++) {
+            String token = tokens[t];
+            boolean isFirst;
+            if (k == 1 && lead && trail) {
+                isFirst = token.equals(first);
+            } else if (k == 1 && lead) {
+                isFirst = token.startsWith(first);
+            } else {
+                isFirst = lead ? token.equals(first) : token.endsWith(first);
+            }
+            if (isFirst) {
+                addPositions(t, positions[0], true, lead ? -1
+                        : token.length() - first.length());
+            }
+            if (k > 1 && (trail ? token.equals(last) : token.startsWith(last))) {
+                addPositions(t, positions[k - 1], false, 0);
+            }
+        }
+        for (int w = 1; w < k - 1; w++) {
+            positions[w] = getPositions(words[w]);
+        }
+        for (int a = 0; a < na; a++) {
+            if (!in(positions, a)) {
+                continue;
+            }
+            for (int w = 1; w < k; w++) {
+                positions[w][a].sort();
+            }
+            /**
+             * Sort the matches by the offset of the first char.
+             */
+            IntList starts = positions[0][a];
+            long[] ss = new long[starts.size / 2];
+            for (int i = 0; i < ss.length; i++) {
+                ss[i] = ((long) starts.data[2 * i] << 32)
+                        | starts.data[2 * i + 1];
+            }
+            Arrays.sort(ss);
+            int c = 0;
+            int lastEnd = 0;
+            int emptyRun = 0;
+            for (int i = 0; i < ss.length; i++) {
+                int start = (int) (ss[i] >>> 32);
+                int s = (int) ss[i];
+                boolean match = true;
+                for (int w = 1; w < k; w++) {
+                    if (!positions[w][a].contains(s + w)) {
+                        match = false;
+                        break;
+                    }
+                }
+                if (match && start >= lastEnd) {
+                    if (start == lastEnd) {
+                        emptyRun++;
+                    } else {
+                        emptyRun = 0;
+                    }
+                    c++;
+                    lastEnd = start + pl;
+                }
+            }
+            if (c > 0 && lastEnd == bodyLengths[a]) {
+                c -= 1 + emptyRun;
+            }
+            if (c != 0) {
+                if (articlePatternCounts[a] == null) {
+                    articlePatternCounts[a] = new int[np];
+                }
+                articlePatternCounts[a][p] += c;
+            }
+        }
+    }
+
+    /**
+     * Counts the terms in termSet for the date ranges in dates. The results
+     * are the same as those from parsing the files and combining the results
+     * in the order of the files (see
+     * {@link Text_ArticleParser#parse(Text_TermSet, ArrayList, Text_Source)}).
+     *
+     * @param termSet The terms. These must be countable (see
+     * {@link #canCount(Text_TermSet)}).
+     * @param dates The date ranges.
+     * @param headlineTermId The id of the term for which headlines are
+     * collected or -1.
+     * @return The results.
+     */
+    public Text_PartialResult count(Text_TermSet termSet,
+            ArrayList<Generic_LocalDateRange> dates, int headlineTermId) {
+        Text_PartialResult result = new Text_PartialResult(
+                new ArrayList<>(papers), termSet.getN(), dates.size());
+        Text_PartialResult[] results = new Text_PartialResult[numberOfFiles];
+        Arrays.fill(results, result);
+        count(termSet, dates, headlineTermId,
+                getArticlePatternCounts(termSet.getMatcher()), null, results);
+        return result;
+    }
+
+    /**
+     * As {@link #count(Text_TermSet, ArrayList, int)} but using counts of
+     * the patterns in each article that have already been got and adding the
+     * results for the articles from each file to the results for that file.
+     *
+     * @param termSet The terms.
+     * @param dates The date ranges.
+     * @param headlineTermId The id of the term for which headlines are
+     * collected or -1.
+     * @param articlePatternCounts The counts of the patterns of the matcher
+     * of termSet in each article (see
+     * {@link #getArticlePatternCounts(Text_TermMatcher)}).
+     * @param fileIds For each file of the index, the index of the file in
+     * results, or null if these are the same.
+     * @param results The results to add to for each file. The articles from
+     * files for which this is null are not counted.
+     */
+    void count(Text_TermSet termSet, ArrayList<Generic_LocalDateRange> dates,
+            int headlineTermId, int[][] articlePatternCounts, int[] fileIds,
+            Text_PartialResult[] results) {
+        int n = termSet.getN();
+        int nr = dates.size();
+        int na = articleFiles.length;
+        Text_TermMatcher matcher = termSet.getMatcher();
+        /**
+         * Add the counts for each article to the results for each date range
+         * that contains it.
+         */
+        LocalDate[] startDates = new LocalDate[nr];
+        LocalDate[] endDates = new LocalDate[nr];
+        ArrayList<TreeSet<DateOutlineDetails>> headlineTermDateHeadlines
+                = new ArrayList<>();
+        for (int r = 0; r < nr; r++) {
+            startDates[r] = dates.get(r).getStart();
+            endDates[r] = dates.get(r).getEnd();
+            headlineTermDateHeadlines.add(new TreeSet<>());
+        }
+        int[] zeros = new int[n];
+        for (int a = 0; a < na; a++) {
+            int f = fileIds == null ? articleFiles[a] : fileIds[articleFiles[a]];
+            Text_PartialResult result = results[f];
+            if (result == null) {
+                continue;
+            }
+            if (articleDates[a] != Text_ArticleStore.NO_DATE) {
+                LocalDate ld = LocalDate.ofEpochDay(articleDates[a]);
+                DayOfWeek day = ld.getDayOfWeek();
+                int[] termCounts = null;
+                for (int r = 0; r < nr; r++) {
+                    if (ld.isAfter(startDates[r]) && ld.isBefore(endDates[r])) {
+                        if (termCounts == null) {
+                            termCounts = articlePatternCounts[a] == null
+                                    ? zeros : matcher.getTermCounts(
+                                            articlePatternCounts[a]);
+                        }
+                        result.addArticle(r, papers.get(articlePapers[a]),
+                                day, termCounts);
+                        if (headlineTermId != -1) {
+                            if (termCounts[headlineTermId] > 0) {
+                                if (day.equals(DayOfWeek.SATURDAY)) {
+                                    headlineTermDateHeadlines.get(r).add(
+                                            new DateOutlineDetails(ld,
+                                                    sections[a], lengths[a],
+                                                    titles[a]));
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            /**
+             * The headlines are added for each file after its last article.
+             */
+            if (a == na - 1 || articleFiles[a + 1] != articleFiles[a]) {
+                for (int r = 0; r < nr; r++) {
+                    result.addHeadlines(r, f,
+                            headlineTermDateHeadlines.get(r));
+                    headlineTermDateHeadlines.set(r, new TreeSet<>());
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the patterns of matcher in each article. The counts are the same
+     * as those from {@link Text_TermMatcher#getPatternCounts(CharSequence)}
+     * for the article bodies.
+     *
+     * @param matcher The matcher.
+     * @return For each article id, the count of each pattern or null if none
+     * of the patterns are in the article.
+     */
+    int[][] getArticlePatternCounts(Text_TermMatcher matcher) {
+        /**
+         * Count the patterns without spaces in each article from the posting
+         * lists of the tokens that the patterns are in. Each token is counted
+         * with the spaces either side of it, as in the body, so that a
+         * match at the end of the token is not discounted.
+         */
+        int na = articleFiles.length;
+        int np = matcher.getNumberOfPatterns();
+        int[][] articlePatternCounts = new int[na][];
+        boolean[] spaced = new boolean[np];
+        for (int p = 0; p < np; p++) {
+            spaced[p] = matcher.getPattern(p).indexOf(' ') != -1;
+        }
+        int[] ps = new int[np];
+        for (int t = 0; t < tokens.length; t++) {
+            int[] tpc = matcher.getPatternCounts(" " + tokens[t] + " ");
+            int nps = 0;
+            for (int p = 0; p < np; p++) {
+                if (tpc[p] != 0 && !spaced[p]) {
+                    ps[nps] = p;
+                    nps++;
+                }
+            }
+            if (nps > 0) {
+                int pos = postings[t];
+                int l = buffer.getInt(pos);
+                pos += 8;
+                for (int i = 0; i < l; i++) {
+                    int a = buffer.getInt(pos);
+                    int f = buffer.getInt(pos + 4);
+                    pos += 8 + f * 8;
+                    int[] apc = articlePatternCounts[a];
+                    if (apc == null) {
+                        apc = new int[np];
+                        articlePatternCounts[a] = apc;
+                    }
+                    for (int j = 0; j < nps; j++) {
+                        apc[ps[j]] += tpc[ps[j]] * f;
+                    }
+                }
+            }
+        }
+        for (int p = 0; p < np; p++) {
+            if (spaced[p]) {
+                countPattern(matcher.getPattern(p), p, np,
+                        articlePatternCounts);
+            }
+        }
+        return articlePatternCounts;
+    }
+
+    /**
+     * Writes a single index of the articles in indexes to path. The files of
+     * the new index are the files of each of indexes in turn and the
+     * articles are numbered in the same order. The index is written to a
+     * temporary file which is then moved into place.
+     *
+     * @param papers The names of the papers of the indexes.
+     * @param indexes The indexes to merge.
+     * @param files For each of indexes, the files it was opened for.
+     * @param path The index file to write.
+     * @throws IOException If encountered.
+     */
+    static void merge(List<String> papers, List<Text_ArticleIndex> indexes,
+            List<List<Text_Source>> files, Path path) throws IOException {
+        /**
+         * Get the indexes with postings for each token.
+         */
+        TreeMap<String, ArrayList<Integer>> tokenIndexes = new TreeMap<>();
+        int ni = indexes.size();
+        int[] next = new int[ni];
+        int[] fileOffsets = new int[ni];
+        int[] articleOffsets = new int[ni];
+        int nf = 0;
+        int na = 0;
+        for (int i = 0; i < ni; i++) {
+            Text_ArticleIndex index = indexes.get(i);
+            fileOffsets[i] = nf;
+            articleOffsets[i] = na;
+            nf += files.get(i).size();
+            na += index.getNumberOfArticles();
+            for (String token : index.tokens) {
+                ArrayList<Integer> is = tokenIndexes.get(token);
+                if (is == null) {
+                    is = new ArrayList<>();
+                    tokenIndexes.put(token, is);
+                }
+                is.add(i);
+            }
+        }
+        Files.createDirectories(path.getParent());
+        Path tmp = Files.createTempFile(path.getParent(),
+                path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream dos = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                dos.writeInt(MAGIC);
+                dos.writeInt(VERSION);
+                dos.writeInt(papers.size());
+                for (String p : papers) {
+                    Text_ArticleStore.writeString(dos, p);
+                }
+                dos.writeInt(nf);
+                for (List<Text_Source> fs : files) {
+                    for (Text_Source f : fs) {
+                        Text_ArticleStore.writeString(dos, f.getId());
+                        dos.writeLong(f.lastModified());
+                        dos.writeLong(f.length());
+                    }
+                }
+                dos.writeInt(na);
+                for (int i = 0; i < ni; i++) {
+                    Text_ArticleIndex index = indexes.get(i);
+                    for (int a = 0; a < index.getNumberOfArticles(); a++) {
+                        dos.writeInt(index.articleFiles[a] + fileOffsets[i]);
+                        dos.writeInt(index.articlePapers[a]);
+                        dos.writeLong(index.articleDates[a]);
+                        Text_ArticleStore.writeString(dos, index.titles[a]);
+                        Text_ArticleStore.writeString(dos, index.sections[a]);
+                        Text_ArticleStore.writeString(dos, index.lengths[a]);
+                        dos.writeInt(index.bodyLengths[a]);
+                    }
+                }
+                dos.writeInt(tokenIndexes.size());
+                for (Map.Entry<String, ArrayList<Integer>> e
+                        : tokenIndexes.entrySet()) {
+                    Text_ArticleStore.writeString(dos, e.getKey());
+                    int np = 0;
+                    int nints = 0;
+                    for (int i : e.getValue()) {
+                        /**
+                         * Tokens are in the same order in each index so the
+                         * token of index i to write next is next[i].
+                         */
+                        Text_ArticleIndex index = indexes.get(i);
+                        int pos = index.postings[next[i]];
+                        np += index.buffer.getInt(pos);
+                        nints += index.buffer.getInt(pos + 4);
+                    }
+                    dos.writeInt(np);
+                    dos.writeInt(nints);
+                    for (int i : e.getValue()) {
+                        Text_ArticleIndex index = indexes.get(i);
+                        int pos = index.postings[next[i]];
+                        int l = index.buffer.getInt(pos);
+                        pos += 8;
+                        for (int j = 0; j < l; j++) {
+                            dos.writeInt(index.buffer.getInt(pos)
+                                    + articleOffsets[i]);
+                            int freq = index.buffer.getInt(pos + 4);
+                            dos.writeInt(freq);
+                            pos += 8;
+                            for (int k = 0; k < 2 * freq; k++) {
+                                dos.writeInt(index.buffer.getInt(pos));
+                                pos += 4;
+                            }
+                        }
+                        next[i]++;
+                    }
+                }
+                dos.writeInt(Text_ArticleStore.END);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * For building an index. Articles can be added for different files
+     * concurrently, provided the articles for each file are added by a
+     * single thread in order. The index is written once all the articles have
+     * been added.
+     */
+    public static class Builder {
+
+        /**
+         * The names of the papers.
+         */
+        final List<String> papers;
+
+        /**
+         * The files.
+         */
+        final List<Text_Source> files;
+
+        /**
+         * For each file, the part of the index for the articles in it.
+         */
+        final Part[] parts;
+
+        /**
+         * Create a new instance.
+         *
+         * @param papers The names of the papers.
+         * @param files The files articles are to be added from.
+         */
+        public Builder(List<String> papers, List<Text_Source> files) {
+            this.papers = papers;
+            this.files = files;
+            parts = new Part[files.size()];
+        }
+
+        /**
+         * Adds an article.
+         *
+         * @param file The index of the file in files the article is from.
+         * @param article The article.
+         */
+        public void add(int file, Text_Article article) {
+            Part part = parts[file];
+            if (part == null) {
+                part = new Part();
+                parts[file] = part;
+            }
+            part.add(article);
+        }
+
+        /**
+         * Writes the index to path. The index is written to a temporary file
+         * which is then moved into place.
+         *
+         * @param path The index file.
+         * @throws IOException If encountered.
+         */
+        public void write(Path path) throws IOException {
+            /**
+             * Get the parts with postings for each token.
+             */
+            TreeMap<String, ArrayList<Integer>> tokenParts = new TreeMap<>();
+            int[] offsets = new int[parts.length];
+            int na = 0;
+            for (int f = 0; f < parts.length; f++) {
+                offsets[f] = na;
+                if (parts[f] != null) {
+                    na += parts[f].articles.size();
+                    for (String token : parts[f].index.keySet()) {
+                        ArrayList<Integer> ps = tokenParts.get(token);
+                        if (ps == null) {
+                            ps = new ArrayList<>();
+                            tokenParts.put(token, ps);
+                        }
+                        ps.add(f);
+                    }
+                }
+            }
+            Files.createDirectories(path.getParent());
+            Path tmp = Files.createTempFile(path.getParent(),
+                    path.getFileName().toString(), ".tmp");
+            try {
+                try (DataOutputStream dos = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                    dos.writeInt(MAGIC);
+                    dos.writeInt(VERSION);
+                    dos.writeInt(papers.size());
+                    for (String p : papers) {
+                        Text_ArticleStore.writeString(dos, p);
+                    }
+                    dos.writeInt(files.size());
+                    for (Text_Source f : files) {
+                        Text_ArticleStore.writeString(dos, f.getId());
+                        dos.writeLong(f.lastModified());
+                        dos.writeLong(f.length());
+                    }
+                    dos.writeInt(na);
+                    for (int f = 0; f < parts.length; f++) {
+                        if (parts[f] == null) {
+                            continue;
+                        }
+                        for (int a = 0; a < parts[f].articles.size(); a++) {
+                            Text_Article article = parts[f].articles.get(a);
+                            dos.writeInt(f);
+                            dos.writeInt(papers.indexOf(article.paper));
+                            dos.writeLong(article.date == null
+                                    ? Text_ArticleStore.NO_DATE
+                                    : article.date.toEpochDay());
+                            Text_ArticleStore.writeString(dos, article.title);
+                            Text_ArticleStore.writeString(dos, article.section);
+                            Text_ArticleStore.writeString(dos, article.length);
+                            dos.writeInt(parts[f].bodyLengths.get(a));
+                        }
+                    }
+                    dos.writeInt(tokenParts.size());
+                    for (Map.Entry<String, ArrayList<Integer>> e
+                            : tokenParts.entrySet()) {
+                        Text_ArticleStore.writeString(dos, e.getKey());
+                        int np = 0;
+                        int ni = 0;
+                        for (int f : e.getValue()) {
+                            IntList ps = parts[f].index.get(e.getKey());
+                            np += ps.get(0);
+                            ni += ps.size - 1;
+                        }
+                        dos.writeInt(np);
+                        dos.writeInt(ni);
+                        for (int f : e.getValue()) {
+                            IntList ps = parts[f].index.get(e.getKey());
+                            int i = 1;
+                            while (i < ps.size) {
+                                dos.writeInt(ps.data[i] + offsets[f]);
+                                int freq = ps.data[i + 1];
+                                dos.writeInt(freq);
+                                for (int j = 0; j < 2 * freq; j++) {
+                                    dos.writeInt(ps.data[i + 2 + j]);
+                                }
+                                i += 2 + 2 * freq;
+                            }
+                        }
+                    }
+                    dos.writeInt(Text_ArticleStore.END);
+                }
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        }
+    }
+
+    /**
+     * The part of an index for the articles in a single file.
+     */
+    static class Part {
+
+        /**
+         * The articles without their bodies.
+         */
+        final ArrayList<Text_Article> articles = new ArrayList<>();
+
+        /**
+         * The number of chars in the body of each article.
+         */
+        final IntList bodyLengths = new IntList();
+
+        /**
+         * For each token, the postings for the articles in this part. The
+         * first int is the number of postings. Each posting is then the
+         * article id in this part, the frequency and for each occurrence the
+         * position and offset.
+         */
+        final HashMap<String, IntList> index = new HashMap<>();
+
+        /**
+         * Adds article.
+         *
+         * @param article The article.
+         */
+        void add(Text_Article article) {
+            String body = article.body;
+            int l = body.length();
+            if (l == 0 || body.charAt(l - 1) != ' ') {
+                /**
+                 * Patterns without spaces are counted token by token and this
+                 * is only the same as counting them in the body if the body
+                 * ends with a space (as bodies from Text_ArticleParser do).
+                 */
+                throw new IllegalArgumentException(
+                        "Expecting a body that ends with a space.");
+            }
+            int id = articles.size();
+            articles.add(new Text_Article(article.paper, article.date,
+                    article.title, article.section, article.length, ""));
+            bodyLengths.add(l);
+            /**
+             * Get the positions and offsets of each token in the body.
+             */
+            HashMap<String, IntList> positions = new HashMap<>();
+            int start = 0;
+            int position = 0;
+            while (start < l) {
+                int end = body.indexOf(' ', start);
+                if (end == -1) {
+                    end = l;
+                }
+                if (end > start) {
+                    String token = body.substring(start, end);
+                    IntList ps = positions.get(token);
+                    if (ps == null) {
+                        ps = new IntList();
+                        positions.put(token, ps);
+                    }
+                    ps.add(position);
+                    ps.add(start);
+                }
+                start = end + 1;
+                position++;
+            }
+            for (Map.Entry<String, IntList> e : positions.entrySet()) {
+                IntList ps = index.get(e.getKey());
+                if (ps == null) {
+                    ps = new IntList();
+                    ps.add(0);
+                    index.put(e.getKey(), ps);
+                }
+                ps.data[0]++;
+                IntList tps = e.getValue();
+                ps.add(id);
+                ps.add(tps.size / 2);
+                for (int i = 0; i < tps.size; i++) {
+                    ps.add(tps.data[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * A growable list of ints.
+     */
+    static class IntList {
+
+        int[] data = new int[4];
+
+        int size;
+
+        void add(int i) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size] = i;
+            size++;
+        }
+
+        int get(int i) {
+            return data[i];
+        }
+
+        void sort() {
+            Arrays.sort(data, 0, size);
+        }
+
+        /**
+         * @param i The int to look for. The list must be sorted.
+         * @return true if the list contains i.
+         */
+        boolean contains(int i) {
+            return Arrays.binarySearch(data, 0, size, i) >= 0;
+        }
+    }
+}
@@ -0,0 +1,1077 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.process;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Attribute;
+import org.jsoup.nodes.Attributes;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import org.jsoup.select.Elements;
+import uk.ac.leeds.ccg.data.text.io.Text_ReadAhead;
+import uk.ac.leeds.ccg.data.text.io.Text_Source;
+import uk.ac.leeds.ccg.data.text.process.Text_Processor2.DateOutlineDetails;
+import uk.ac.leeds.ccg.data.text.term.Text_TermSet;
+import uk.ac.leeds.ccg.generic.time.Generic_LocalDateRange;
+
+/**
+ * For parsing LexisNexis HTML files in the format processed by
+ * {@link Text_Processor2}. An instance holds the state of parsing a single
+ * file and so is confined to a single thread. A new instance should be
+ * created for each file so that files can be parsed concurrently.
+ */
+public class Text_ArticleParser {
+
+    /**
+     * The processor for the papers, headline term and date parsing.
+     */
+    final Text_Processor2 p;
+
+    /**
+     * For reading input files that have been read ahead or null.
+     */
+    final Text_ReadAhead readAhead;
+
+    /**
+     * Create a new instance.
+     *
+     * @param p The processor.
+     */
+    public Text_ArticleParser(Text_Processor2 p) {
+        this(p, null);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param p The processor.
+     * @param readAhead For reading input files that have been read ahead or
+     * null.
+     */
+    public Text_ArticleParser(Text_Processor2 p, Text_ReadAhead readAhead) {
+        this.p = p;
+        this.readAhead = readAhead;
+        papers = new HashMap<>();
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        for (String name : p.papers) {
+            papers.put(name, p.getPaper(name));
+            min = Math.min(min, name.length());
+            max = Math.max(max, name.length());
+        }
+        minPaperLength = min;
+        maxPaperLength = max;
+    }
+
+    /**
+     * For looking up the papers to extract articles for by name.
+     */
+    final HashMap<String, Text_Paper> papers;
+
+    /**
+     * The length of the shortest name in papers.
+     */
+    final int minPaperLength;
+
+    /**
+     * The length of the longest name in papers.
+     */
+    final int maxPaperLength;
+
+    boolean inArticle;
+
+    String paper;
+
+    /**
+     * How the articles of paper are laid out.
+     */
+    Text_Paper paperLayout;
+
+    /**
+     * Iteratively parse through nodes.
+     *
+     * @param node
+     */
+    boolean isArticleNode(Node node) {
+        //System.out.println(node.toString());
+        String nodeName;
+        nodeName = node.nodeName();
+        //System.out.println("nodeName"+ nodeName);
+        int nodeAttributeIndex;
+        Attributes nodeAttributes;
+        Iterator<Attribute> iteA;
+        Attribute nodeAttribute;
+        String key;
+        String value;
+        nodeAttributeIndex = 0;
+        nodeAttributes = node.attributes();
+        iteA = nodeAttributes.iterator();
+        while (iteA.hasNext()) {
+            //System.out.println("nodeAttributeIndex"+ nodeAttributeIndex);
+            nodeAttribute = iteA.next();
+            key = nodeAttribute.getKey();
+            value = nodeAttribute.getValue();
+            //System.out.println("key"+ key);
+            //System.out.println("value"+ value);
+            /**
+             * Check the length first so that long text is not hashed.
+             */
+            int l = value.length();
+            if (l >= minPaperLength && l <= maxPaperLength) {
+                Text_Paper tp = papers.get(value);
+                if (tp != null) {
+                    //System.out.println(value);
+                    paper = value;
+                    paperLayout = tp;
+                    return true;
+                    //parseExpressNode(node);
+                }
+            }
+            nodeAttributeIndex++;
+        }
+        return false;
+    }
+
+    String Date;
+    boolean gotDate;
+
+    /**
+     * The date of the current article which is parsed from Date once it is
+     * complete.
+     */
+    LocalDate date;
+
+    /**
+     * For testing whether an article with a given date is wanted or null if
+     * all articles are wanted.
+     */
+    Predicate<LocalDate> wanted;
+
+    /**
+     * If true then the current article is not wanted and is being skipped:
+     * its nodes are gone through to find the end of it, but its title,
+     * section, length and body are not built.
+     */
+    boolean skip;
+    int returnCount;
+
+    /**
+     * @param node
+     */
+    boolean getDate(Node node) {
+        //System.out.println(node.toString());
+        String nodeName;
+        nodeName = node.nodeName();
+        //System.out.println("nodeName"+ nodeName);
+        int nodeAttributeIndex;
+        Attributes nodeAttributes;
+        Iterator<Attribute> iteA;
+        Attribute nodeAttribute;
+        String key;
+        String value;
+        nodeAttributeIndex = 0;
+        nodeAttributes = node.attributes();
+        iteA = nodeAttributes.iterator();
+        while (iteA.hasNext()) {
+            //System.out.println("nodeAttributeIndex"+ nodeAttributeIndex);
+            nodeAttribute = iteA.next();
+            key = nodeAttribute.getKey();
+            value = nodeAttribute.getValue();
+            //System.out.println("key"+ key);
+            //System.out.println("value"+ value);
+            if (key.equalsIgnoreCase("#text")) {
+                if (!value.equalsIgnoreCase("\n")) {
+                    Date += value;
+                    if (value.endsWith(paperLayout.dateEnd)) {
+                        return true;
+                    }
+                }
+            }
+            nodeAttributeIndex++;
+        }
+        return false;
+    }
+
+    String Title;
+    boolean startTitle;
+    boolean gotTitle;
+
+    /**
+     * @param node
+     */
+    boolean getTitle(Node node) {
+        //System.out.println(node.toString());
+        String nodeName;
+        nodeName = node.nodeName();
+        //System.out.println("nodeName"+ nodeName);
+        int nodeAttributeIndex;
+        Attributes nodeAttributes;
+        Iterator<Attribute> iteA;
+        Attribute nodeAttribute;
+        String key;
+        String value;
+        nodeAttributeIndex = 0;
+        nodeAttributes = node.attributes();
+        iteA = nodeAttributes.iterator();
+        while (iteA.hasNext()) {
+            //System.out.println("nodeAttributeIndex"+ nodeAttributeIndex);
+            nodeAttribute = iteA.next();
+            key = nodeAttribute.getKey();
+            value = nodeAttribute.getValue();
+            //System.out.println("key"+ key);
+            //System.out.println("value"+ value);
+            if (!startTitle) {
+                if (value.equalsIgnoreCase("c7")) {
+                    startTitle = true;
+                }
+            } else {
+                if (key.equalsIgnoreCase("#text")) {
+                    /**
+                     * Replace all non alphabetical non numeric characters with
+                     * a space. This is to help overcome issues with searching
+                     * for terms that might be found in other words. It is not a
+                     * perfect solution as some terms made up of several words
+                     * might fall across two sentences and not really be terms
+                     * at all, but just a set of words in the same order (e.g.
+                     * instead of counting"migrant crisis this might count"...
+                     * migrant. Crisis ...").
+                     */
+                    //value = value.replaceAll("[^A-Za-z0-9]"," ");
+                    if (!skip) {
+                        Title += value;
+                    }
+                }
+                if (value.equalsIgnoreCase("c6")) {
+                    // Remove double spaces
+                    while (!skip && Title.contains("  ")) {
+                        Title = Title.replaceAll("  ", " ");
+                    }
+                    return true;
+                }
+            }
+            nodeAttributeIndex++;
+        }
+        return false;
+    }
+
+    String Section;
+    boolean startSection;
+    boolean gotSection;
+
+    /**
+     * Iteratively parse through nodes.
+     *
+     * @param node
+     */
+    boolean getSection(Node node) {
+        //System.out.println("Node"+ node.toString());
+        String nodeName;
+        nodeName = node.nodeName();
+        //System.out.println("nodeName"+ nodeName);
+        int nodeAttributeIndex;
+        Attributes nodeAttributes;
+        Iterator<Attribute> iteA;
+        Attribute nodeAttribute;
+        String key;
+        String value;
+        nodeAttributeIndex = 0;
+        nodeAttributes = node.attributes();
+        iteA = nodeAttributes.iterator();
+        while (iteA.hasNext()) {
+            //System.out.println("nodeAttributeIndex"+ nodeAttributeIndex);
+            nodeAttribute = iteA.next();
+            key = nodeAttribute.getKey();
+            value = nodeAttribute.getValue();
+            //System.out.println("key"+ key);
+            //System.out.println("value"+ value);
+            if (!startSection) {
+                if (value.equalsIgnoreCase("SECTION: ")) {
+                    startSection = true;
+                }
+            } else {
+                if (key.equalsIgnoreCase("#text")) {
+                    if (!skip) {
+                        Section += value;
+                    }
+                    return true;
+                }
+            }
+            nodeAttributeIndex++;
+        }
+        return false;
+    }
+
+    String Length;
+    boolean startLength;
+    boolean gotLength;
+
+    /**
+     * Iteratively parse through nodes.
+     *
+     * @param node
+     */
+    boolean getLength(Node node) {
+        //System.out.println("Node"+ node.toString());
+        String nodeName;
+        nodeName = node.nodeName();
+        //System.out.println("nodeName"+ nodeName);
+        int nodeAttributeIndex;
+        Attributes nodeAttributes;
+        Iterator<Attribute> iteA;
+        Attribute nodeAttribute;
+        String key;
+        String value;
+        nodeAttributeIndex = 0;
+        nodeAttributes = node.attributes();
+        iteA = nodeAttributes.iterator();
+        while (iteA.hasNext()) {
+            //System.out.println("nodeAttributeIndex"+ nodeAttributeIndex);
+            nodeAttribute = iteA.next();
+            key = nodeAttribute.getKey();
+            value = nodeAttribute.getValue();
+            //System.out.println("key"+ key);
+            //System.out.println("value"+ value);
+            if (!startLength) {
+                if (value.equalsIgnoreCase("LENGTH: ")) {
+                    startLength = true;
+                }
+            } else {
+                if (key.equalsIgnoreCase("#text")) {
+                    if (!skip) {
+                        Length += value;
+                    }
+                    return true;
+                }
+            }
+            nodeAttributeIndex++;
+        }
+        return false;
+    }
+
+    /**
+     * For accumulating the body of an article. This is reused for each
+     * article.
+     */
+    final StringBuilder Article = new StringBuilder();
+    boolean startArticle;
+    boolean gotArticle;
+
+    /**
+     * For normalising punctuation in article text: 0 for chars that are kept;
+     * 1 for quotation marks that are replaced with a space; 2 for punctuation
+     * that is preceded by a space.
+     */
+    static final byte[] PUNCTUATION = new byte[128];
+
+    static {
+        PUNCTUATION['\''] = 1;
+        PUNCTUATION['"'] = 1;
+        PUNCTUATION['.'] = 2;
+        PUNCTUATION['?'] = 2;
+        PUNCTUATION['!'] = 2;
+        PUNCTUATION[','] = 2;
+        PUNCTUATION[';'] = 2;
+        PUNCTUATION[':'] = 2;
+    }
+
+    /**
+     * Appends value to sb adding a space before punctuation and replacing
+     * quotation marks with spaces in a single pass.
+     *
+     * @param value The value to append.
+     * @param sb What to append to.
+     */
+    static void appendNormalised(String value, StringBuilder sb) {
+        int l = value.length();
+        for (int i = 0; i < l; i++) {
+            char c = value.charAt(i);
+            if (c < 128) {
+                switch (PUNCTUATION[c]) {
+                    case 1:
+                        sb.append(' ');
+                        continue;
+                    case 2:
+                        sb.append(' ');
+                        break;
+                    default:
+                        break;
+                }
+            }
+            sb.append(c);
+        }
+    }
+
+    /**
+     * Replaces each run of spaces in sb with a single space in place.
+     *
+     * @param sb The StringBuilder.
+     */
+    static void removeDoubleSpaces(StringBuilder sb) {
+        int l = sb.length();
+        int j = 0;
+        for (int i = 0; i < l; i++) {
+            char c = sb.charAt(i);
+            if (c != ' ' || j == 0 || sb.charAt(j - 1) != ' ') {
+                sb.setCharAt(j, c);
+                j++;
+            }
+        }
+        sb.setLength(j);
+    }
+
+    /**
+     * Iteratively parse through nodes.
+     *
+     * @param node
+     */
+    boolean getArticle(Node node) {
+        //System.out.println("Node"+ node.toString());
+        /**
+         * The HTML of an element starts with "<" and so is only got for other
+         * nodes.
+         */
+        if (!(node instanceof Element)
+                && node.toString().equalsIgnoreCase("LOAD-DATE ")) {
+            return true;
+        }
+        String nodeName;
+        nodeName = node.nodeName();
+        //System.out.println("nodeName"+ nodeName);
+        // end at div
+        int nodeAttributeIndex;
+        Attributes nodeAttributes;
+        Iterator<Attribute> iteA;
+        Attribute nodeAttribute;
+        String key;
+        String value;
+
+//        if (node.childNodeSize() > 0) {
+//            List<Node> childNodes;
+//            childNodes = node.childNodes();
+//            Node childNode;
+//            Iterator<Node> ite;
+//            ite = childNodes.iterator();
+//            while (ite.hasNext()) {
+//                childNode = ite.next();
+//                System.out.println("Node"+ childNode.toString());
+////                if (childNode.toString().equalsIgnoreCase("SECTION: ")) {
+////                    startSection = true;
+////                }
+//                nodeAttributeIndex = 0;
+//                nodeAttributes = node.attributes();
+//                iteA = nodeAttributes.iterator();
+//                while (iteA.hasNext()) {
+//                    System.out.println("nodeAttributeIndex"+ nodeAttributeIndex);
+//                    nodeAttribute = iteA.next();
+//                    key = nodeAttribute.getKey();
+//                    value = nodeAttribute.getValue();
+//                    System.out.println("key"+ key);
+//                    System.out.println("value"+ value);
+//                    if (!startLength) {
+//                        if (value.equalsIgnoreCase("c7")) {
+//                            startLength = true;
+//                        }
+//                    } else {
+//                        if (key.equalsIgnoreCase("#text")) {
+//                            Length += value;
+//                            //if (value.endsWith("day")) {
+//                            //    return true;
+//                            //}
+//                        }
+////                if (value.equalsIgnoreCase("c6")) {
+////                    return true;
+////                }
+//                    }
+//                    nodeAttributeIndex++;
+//                }
+//
+//            }
+//        }
+        nodeAttributeIndex = 0;
+        nodeAttributes = node.attributes();
+        iteA = nodeAttributes.iterator();
+        while (iteA.hasNext()) {
+            //System.out.println("nodeAttributeIndex"+ nodeAttributeIndex);
+            nodeAttribute = iteA.next();
+            key = nodeAttribute.getKey();
+            value = nodeAttribute.getValue();
+            //System.out.println("key"+ key);
+            //System.out.println("value"+ value);
+            if (key.equalsIgnoreCase("#text")) {
+                if (!value.equalsIgnoreCase("\n")) {
+                    if (value.equalsIgnoreCase("LOAD-DATE: ")) {
+                        // Remove double spaces.
+                        if (!skip) {
+                            removeDoubleSpaces(Article);
+                        }
+                        return true;
+                    }
+                    /**
+                     * Replace all non alphabetical non numeric characters with
+                     * a space. This is to help overcome issues with searching
+                     * for terms that might be found in other words. It is not a
+                     * perfect solution as some terms made up of several words
+                     * might fall across two sentences and not really be terms
+                     * at all, but just a set of words in the same order (e.g.
+                     * instead of counting"migrant crisis this might count"...
+                     * migrant. Crisis ...").
+                     */
+                    //value = value.replaceAll("[^A-Za-z0-9]"," ");
+                    /**
+                     * Add space before punctuation and replace quotation marks
+                     * with spaces.
+                     */
+                    if (!skip) {
+                        appendNormalised(value, Article);
+                        Article.append(' ');
+                    }
+                }
+                //return true;
+                //if (value.endsWith("day")) {
+                //    return true;
+                //}
+            }
+//                if (value.equalsIgnoreCase("c6")) {
+//                    return true;
+//                }
+            nodeAttributeIndex++;
+        }
+        return false;
+    }
+
+    void parseChildNodes(Node node) {
+        if (node.childNodeSize() > 0) {
+            List<Node> childNodes;
+            childNodes = node.childNodes();
+            Node childNode;
+            Iterator<Node> ite;
+            ite = childNodes.iterator();
+            while (ite.hasNext()) {
+                childNode = ite.next();
+                isArticleNode(childNode);
+            }
+        }
+    }
+
+    /**
+     * This method parses the HTML file and returns results for each date range
+     * in dates. Each article is parsed once, the terms in it are counted once
+     * and the counts are added to the results for each date range that
+     * contains the article.
+     *
+     * @param termSet The compiled terms.
+     * @param dates The date ranges.
+     * @param input The input file to be parsed.
+     * @return The results for input.
+     */
+    public Text_PartialResult parse(Text_TermSet termSet,
+            ArrayList<Generic_LocalDateRange> dates, Text_Source input) {
+        return parse(termSet, dates, 0, input, null);
+    }
+
+    /**
+     * As {@link #parse(Text_TermSet, ArrayList, Text_Source)} but with headlines
+     * kept for input as file number file and also passing each article to
+     * also.
+     *
+     * @param termSet The compiled terms.
+     * @param dates The date ranges.
+     * @param file The index of input in the files being processed.
+     * @param input The input file to be parsed.
+     * @param also What else to do with each article or null.
+     * @return The results for input.
+     */
+    public Text_PartialResult parse(Text_TermSet termSet,
+            ArrayList<Generic_LocalDateRange> dates, int file, Text_Source input,
+            Consumer<Text_Article> also) {
+        Text_ArticleCounter counter = new Text_ArticleCounter(termSet, dates,
+                p.headlineTerm);
+        Text_PartialResult result = new Text_PartialResult(p.papers,
+                termSet.getN(), dates.size());
+        ArrayList<TreeSet<DateOutlineDetails>> headlineTermDateHeadlines
+                = counter.newHeadlines();
+        /**
+         * Unless every article is also wanted for something else, articles
+         * that are not in any time period are skipped once their date is
+         * known. This is only if articles are not being stored (see
+         * extract(Text_Source, Predicate, Consumer)).
+         */
+        extract(input, also == null ? counter::inPeriods : null,
+                (Text_Article a) -> {
+                    if (also != null) {
+                        also.accept(a);
+                    }
+                    counter.add(a, counter.getTermCounts(a), result,
+                            headlineTermDateHeadlines);
+                });
+        counter.addHeadlines(result, file, headlineTermDateHeadlines);
+        return result;
+    }
+
+    /**
+     * Gets the articles for the HTML file passing each in turn to action. If
+     * there is a current {@link Text_ArticleStore} for input (see
+     * {@link Text_Processor2#storeArticles}) then the articles are read from
+     * it. Otherwise the articles are extracted from input and, if articles
+     * are being stored, a store is written for later use.
+     *
+     * @param input The input file.
+     * @param action What to do with each article.
+     */
+    public void extract(Text_Source input, Consumer<Text_Article> action) {
+        extract(input, null, action);
+    }
+
+    /**
+     * As {@link #extract(Text_Source, Consumer)} but if articles are not being
+     * stored, only the articles with dates that are wanted are extracted and
+     * passed to action. If articles are being stored then wanted is ignored:
+     * all articles are extracted so that the store is complete, and all are
+     * passed to action, and reading a current store gives all articles. So
+     * the skipping only happens if {@link Text_Processor2#storeArticles} is
+     * false, and as callers that index articles pass null for wanted, only
+     * if {@link Text_Processor2#indexArticles} is also false.
+     *
+     * @param input The input file.
+     * @param wanted For testing whether an article with a given date is
+     * wanted or null if all articles are wanted.
+     * @param action What to do with each article.
+     */
+    public void extract(Text_Source input, Predicate<LocalDate> wanted,
+            Consumer<Text_Article> action) {
+        Path store = p.getArticleStore(input);
+        if (store == null) {
+            extract(input, p.streaming, wanted, action);
+            return;
+        }
+        try {
+            if (isStored(input)) {
+                if (Text_ArticleStore.read(store, p.papers, action)) {
+                    return;
+                }
+            }
+            try (Text_ArticleStore.Writer w = new Text_ArticleStore.Writer(
+                    store, p.papers)) {
+                boolean extracted = extract(input, p.streaming,
+                        (Text_Article a) -> {
+                            w.write(a);
+                            action.accept(a);
+                        });
+                if (extracted && !w.failed) {
+                    w.commit();
+                }
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(Text_ArticleParser.class
+                    .getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * @param input The input file.
+     * @return true if there is an article store for input that was modified
+     * after input (see {@link Text_Processor2#getArticleStore(Text_Source)}).
+     * @throws IOException If encountered.
+     */
+    boolean isStored(Text_Source input) throws IOException {
+        Path store = p.getArticleStore(input);
+        return store != null && Files.exists(store)
+                && Files.getLastModifiedTime(store).toMillis()
+                >= input.lastModified();
+    }
+
+    /**
+     * Extracts the articles from the HTML file passing each in turn to action.
+     *
+     * If streaming is false, the whole document is parsed into a jsoup
+     * Document and the nodes are then gone through. If streaming is true, the
+     * document is parsed using a jsoup StreamParser: each element that is a
+     * child of body is gone through as soon as it is complete and is then
+     * removed, so that the memory needed is bounded by the largest such
+     * element rather than the size of the file. LexisNexis exports have each
+     * part of each article in its own div in body, so in effect only one
+     * article is held in memory at a time. Nodes are gone through in the same
+     * order in either case, except that text directly in body is skipped when
+     * streaming. (When not streaming, such text is gone through before any
+     * article and has no effect.)
+     *
+     * @param input The input file to be parsed.
+     * @param streaming Whether to parse in a streaming mode.
+     * @param action What to do with each article.
+     * @return true if the whole of input was parsed and false if an
+     * IOException was encountered.
+     */
+    public boolean extract(Text_Source input, boolean streaming,
+            Consumer<Text_Article> action) {
+        return extract(input, streaming, null, action);
+    }
+
+    /**
+     * As {@link #extract(Text_Source, boolean, Consumer)} but only the articles with
+     * dates that are wanted are extracted and passed to action. Once the date
+     * of an article is known, if it is not wanted, the rest of the article is
+     * skipped without its title, section, length or body being built.
+     *
+     * If not streaming and input has at least
+     * {@link Text_Processor2#splitBytes} bytes, it may be split into parts
+     * that are parsed in parallel (see
+     * {@link #extract(byte[], String, Predicate, Consumer)}). Files are not
+     * split when streaming, as that needs all of the file and then all the
+     * articles of each part in memory before any are passed to action.
+     *
+     * @param input The input file to be parsed.
+     * @param streaming Whether to parse in a streaming mode.
+     * @param wanted For testing whether an article with a given date is
+     * wanted or null if all articles are wanted.
+     * @param action What to do with each article.
+     * @return true if the whole of input was parsed and false if an
+     * IOException was encountered.
+     */
+    public boolean extract(Text_Source input, boolean streaming,
+            Predicate<LocalDate> wanted, Consumer<Text_Article> action) {
+        if (!streaming && p.splitBytes > 0
+                && input.length() >= p.splitBytes) {
+            byte[] b;
+            try {
+                b = readAhead == null ? input.readAllBytes()
+                        : readAhead.getBytes(input);
+            } catch (IOException ex) {
+                Logger.getLogger(Text_ArticleParser.class
+                        .getName()).log(Level.SEVERE, null, ex);
+                return false;
+            }
+            return extract(b, input.getId(), wanted, action);
+        }
+        if (streaming) {
+            try (BufferedReader br = readAhead == null
+                    ? input.newBufferedReader()
+                    : readAhead.newBufferedReader(input)) {
+                extract(br, wanted, action);
+            } catch (IOException | UncheckedIOException ex) {
+                Logger.getLogger(Text_ArticleParser.class
+                        .getName()).log(Level.SEVERE, null, ex);
+                return false;
+            }
+        } else {
+            Document doc = null;
+            try (InputStream is = readAhead == null
+                    ? input.newInputStream()
+                    : readAhead.newInputStream(input)) {
+                doc = Jsoup.parse(is, "utf-8", input.getId());
+            } catch (IOException ex) {
+                Logger.getLogger(Text_ArticleParser.class
+                        .getName()).log(Level.SEVERE, null, ex);
+                return false;
+            }
+            extract(doc, wanted, action);
+        }
+        return true;
+    }
+
+    /**
+     * As {@link #extract(Text_Source, boolean, Predicate, Consumer)} when not
+     * streaming but for the bytes of a file that is large enough that it may
+     * be worth splitting. As each part is parsed into a Document that is
+     * smaller than one for the whole file would be, the memory needed is no
+     * more than for parsing the whole file into a Document.
+     * The articles are found (see {@link Text_ArticleSplitter}) and if there
+     * are more than {@link Text_Processor2#splitArticles}, b is split into
+     * parts each with that many articles. The parts are extracted in
+     * parallel as fork join tasks, so idle threads in the pool of the
+     * current thread steal them, and then the articles from each part are
+     * passed to action in order. The parts must join up: if any part other
+     * than the last ends in the middle of an article, the parts are not used
+     * and b is extracted as a whole.
+     *
+     * @param b The bytes of the file.
+     * @param baseUri The base URI of the file.
+     * @param wanted For testing whether an article with a given date is
+     * wanted or null if all articles are wanted.
+     * @param action What to do with each article.
+     * @return true if the whole of b was parsed and false if an IOException
+     * was encountered.
+     */
+    boolean extract(byte[] b, String baseUri, Predicate<LocalDate> wanted,
+            Consumer<Text_Article> action) {
+        int[] starts = Text_ArticleSplitter.getArticleStarts(b, p.papers);
+        int splitArticles = Math.max(1, p.splitArticles);
+        if (starts.length > splitArticles) {
+            ArrayList<Integer> bounds = new ArrayList<>();
+            bounds.add(0);
+            for (int i = splitArticles; i < starts.length;
+                    i += splitArticles) {
+                bounds.add(starts[i]);
+            }
+            bounds.add(b.length);
+            ArrayList<Part> parts = new ArrayList<>();
+            for (int i = 0; i < bounds.size() - 1; i++) {
+                parts.add(new Part(bounds.get(i), bounds.get(i + 1)));
+            }
+            ForkJoinTask.invokeAll(parts.stream().map(part
+                    -> ForkJoinTask.adapt(() -> part.extract(b, baseUri,
+                    wanted))).collect(Collectors.toList()));
+            boolean joined = true;
+            int last = parts.size() - 1;
+            for (int i = 0; i < last && parts.get(i).extracted; i++) {
+                joined = joined && parts.get(i).complete;
+            }
+            if (joined) {
+                for (Part part : parts) {
+                    part.articles.forEach(action);
+                    if (!part.extracted) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return extract(b, 0, b.length, baseUri, wanted, action);
+    }
+
+    /**
+     * A part of a file.
+     */
+    class Part {
+
+        /**
+         * The index of the start of the part.
+         */
+        final int from;
+
+        /**
+         * The index of the end of the part.
+         */
+        final int to;
+
+        /**
+         * The articles extracted from the part.
+         */
+        final ArrayList<Text_Article> articles = new ArrayList<>();
+
+        /**
+         * Whether the whole part was parsed.
+         */
+        boolean extracted;
+
+        /**
+         * Whether the part ended outside an article.
+         */
+        boolean complete;
+
+        Part(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Extracts the articles from the part using a new parser.
+         */
+        void extract(byte[] b, String baseUri, Predicate<LocalDate> wanted) {
+            Text_ArticleParser parser = new Text_ArticleParser(p);
+            extracted = parser.extract(b, from, to, baseUri, wanted,
+                    articles::add);
+            complete = !parser.inArticle;
+        }
+    }
+
+    /**
+     * Extracts the articles from part of the bytes of a file passing each in
+     * turn to action. The part is parsed into a jsoup Document.
+     *
+     * @param b The bytes.
+     * @param from The index of the start of the part.
+     * @param to The index of the end of the part.
+     * @param baseUri The base URI of the file.
+     * @param wanted For testing whether an article with a given date is
+     * wanted or null if all articles are wanted.
+     * @param action What to do with each article.
+     * @return true if the whole part was parsed and false if an IOException
+     * was encountered.
+     */
+    boolean extract(byte[] b, int from, int to, String baseUri,
+            Predicate<LocalDate> wanted, Consumer<Text_Article> action) {
+        Document doc = null;
+        try (InputStream is = new ByteArrayInputStream(b, from, to - from)) {
+            doc = Jsoup.parse(is, "utf-8", baseUri);
+        } catch (IOException ex) {
+            Logger.getLogger(Text_ArticleParser.class
+                    .getName()).log(Level.SEVERE, null, ex);
+            return false;
+        }
+        extract(doc, wanted, action);
+        return true;
+    }
+
+    /**
+     * Resets the state of parsing for a new file.
+     *
+     * @param wanted For testing whether an article with a given date is
+     * wanted or null if all articles are wanted.
+     */
+    void start(Predicate<LocalDate> wanted) {
+        this.wanted = wanted;
+        skip = false;
+        inArticle = false;
+        gotDate = false;
+        gotTitle = false;
+    }
+
+    /**
+     * Extracts the articles from br using a jsoup StreamParser passing each
+     * in turn to action.
+     *
+     * @param br The reader.
+     * @param wanted For testing whether an article with a given date is
+     * wanted or null if all articles are wanted.
+     * @param action What to do with each article.
+     * @throws IOException If encountered.
+     */
+    void extract(BufferedReader br, Predicate<LocalDate> wanted,
+            Consumer<Text_Article> action) throws IOException {
+        start(wanted);
+        try (StreamParser sp = new StreamParser(Parser.htmlParser())) {
+            Iterator<Element> ite = sp.parse(br, "").iterator();
+            while (ite.hasNext()) {
+                Element element = ite.next();
+                Element parent = element.parent();
+                if (parent != null && parent.nameIs("body")) {
+                    extract(element.getAllElements(), action);
+                    /**
+                     * Discard this and any text before it. (Any following
+                     * element may already be being built and so is left.)
+                     */
+                    Node previous = element.previousSibling();
+                    while (previous != null) {
+                        previous.remove();
+                        previous = element.previousSibling();
+                    }
+                    element.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Extracts the articles from doc passing each in turn to action.
+     *
+     * @param doc The document.
+     * @param wanted For testing whether an article with a given date is
+     * wanted or null if all articles are wanted.
+     * @param action What to do with each article.
+     */
+    void extract(Document doc, Predicate<LocalDate> wanted,
+            Consumer<Text_Article> action) {
+        start(wanted);
+        extract(doc.getAllElements(), action);
+    }
+
+    /**
+     * Goes through the child nodes of each element in elements passing each
+     * article completed to action.
+     *
+     * @param elements The elements.
+     * @param action What to do with each article.
+     */
+    void extract(Elements elements, Consumer<Text_Article> action) {
+        Element element;
+        Iterator<Element> ite;
+        List<Node> nodes;
+        Iterator<Node> iteN;
+        Node node;
+        ite = elements.iterator();
+        while (ite.hasNext()) {
+            element = ite.next();
+            nodes = element.childNodes();
+            iteN = nodes.iterator();
+            while (iteN.hasNext()) {
+                node = iteN.next();
+                if (inArticle) {
+                    if (gotDate) {
+                        if (gotTitle) {
+                            if (gotSection) {
+                                if (gotLength) {
+                                    gotArticle = getArticle(node);
+                                } else {
+                                    gotLength = getLength(node);
+                                    Article.setLength(0);
+                                    Article.append(' '); // The space could be important.
+                                }
+                            } else {
+                                if (!paperLayout.hasSection) {
+                                    gotSection = true;
+                                } else {
+                                    gotSection = getSection(node);
+                                }
+                                Length = "";
+                            }
+                        } else {
+                            gotTitle = getTitle(node);
+                            Section = "";
+                        }
+                    } else {
+                        gotDate = getDate(node);
+                        Title = " ";  // The space could be important.
+                        if (gotDate) {
+                            date = p.parseDate(Date);
+                            skip = wanted != null && !wanted.test(date);
+                        }
+                    }
+                } else {
+                    inArticle = isArticleNode(node);
+                    Date = "";
+                }
+            }
+            if (gotArticle) {
+                if (!skip) {
+                    action.accept(new Text_Article(paper, date, Title,
+                            Section, Length, Article.toString()));
+                }
+                skip = false;
+                inArticle = false;
+                gotDate = false;
+                startTitle = false;
+                gotTitle = false;
+                startSection = false;
+                gotSection = false;
+                startLength = false;
+                gotLength = false;
+                gotArticle = false;
+            }
+        }
+    }
+}
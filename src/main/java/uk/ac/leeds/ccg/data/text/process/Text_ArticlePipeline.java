@@ -0,0 +1,305 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.process;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import uk.ac.leeds.ccg.data.text.io.Text_ReadAhead;
+import uk.ac.leeds.ccg.data.text.io.Text_Source;
+import uk.ac.leeds.ccg.data.text.process.Text_Processor2.DateOutlineDetails;
+
+/**
+ * For processing files in a pipeline of stages that run concurrently and
+ * hand over to each other through bounded queues:
+ * <ol>
+ * <li>Reading: files are read into memory ahead of being extracted by a
+ * {@link Text_ReadAhead}, which reads at most a given number of files
+ * ahead.</li>
+ * <li>Extracting: extractor threads each take the next file and extract the
+ * articles from it with a {@link Text_ArticleParser}, putting the articles
+ * that are in any time period onto the article queue.</li>
+ * <li>Matching: matcher threads take articles from the article queue and
+ * count the terms in them.</li>
+ * <li>Aggregating: the counts for each article are added to the results for
+ * the file it is from (which are combined for all files by the caller).</li>
+ * </ol>
+ * Each stage has its own number of threads, so the reading, which is bound
+ * by I/O, and the extracting and matching, which are bound by CPU, can be
+ * scaled separately. The queues are bounded, so a stage that gets ahead
+ * waits for the next one and the memory used stays bounded.
+ */
+public class Text_ArticlePipeline {
+
+    /**
+     * The processor.
+     */
+    final Text_Processor2 p;
+
+    /**
+     * For counting the terms in articles.
+     */
+    final Text_ArticleCounter counter;
+
+    /**
+     * The number of extractor threads.
+     */
+    final int extractors;
+
+    /**
+     * The number of matcher threads.
+     */
+    final int matchers;
+
+    /**
+     * The articles extracted and waiting to be matched.
+     */
+    final ArrayBlockingQueue<Item> queue;
+
+    /**
+     * For each file being processed, the results for it. These are only
+     * added to while holding the lock on them.
+     */
+    Text_PartialResult[] fileResults;
+
+    /**
+     * The number of articles in each paper by the day of week for each time
+     * period for all the files processed by this pipeline. Each matcher
+     * thread adds to this without a lock, so it has a stripe for each
+     * matcher thread, and it can be read while files are being processed.
+     */
+    final Text_PaperDayCounts paperArticleCounts;
+
+    /**
+     * For each file being processed, the headlines for it for each time
+     * period.
+     */
+    ArrayList<ArrayList<TreeSet<DateOutlineDetails>>> fileHeadlines;
+
+    /**
+     * An article on the queue.
+     */
+    static class Item {
+
+        /**
+         * The index of the file the article is from or -1 for the item that
+         * tells a matcher thread to stop.
+         */
+        final int file;
+
+        /**
+         * The article.
+         */
+        final Text_Article article;
+
+        Item(int file, Text_Article article) {
+            this.file = file;
+            this.article = article;
+        }
+    }
+
+    /**
+     * Tells a matcher thread to stop.
+     */
+    static final Item END = new Item(-1, null);
+
+    /**
+     * Create a new instance.
+     *
+     * @param p The processor.
+     * @param counter For counting the terms in articles.
+     * @param extractors The number of extractor threads.
+     * @param matchers The number of matcher threads.
+     * @param queueSize The maximum number of articles waiting to be matched.
+     */
+    public Text_ArticlePipeline(Text_Processor2 p, Text_ArticleCounter counter,
+            int extractors, int matchers, int queueSize) {
+        this.p = p;
+        this.counter = counter;
+        this.extractors = extractors;
+        this.matchers = matchers;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.paperArticleCounts = new Text_PaperDayCounts(p.papers,
+                counter.nr, matchers);
+    }
+
+    /**
+     * @return The number of articles in each paper by the day of week for
+     * each time period for all the files processed so far. As this is added
+     * to while files are being processed, it can be used to report progress.
+     */
+    public Text_PaperDayCounts getPaperArticleCounts() {
+        return paperArticleCounts;
+    }
+
+    /**
+     * Processes files.
+     *
+     * @param pool The executor for the extractor threads.
+     * @param files The files in the order to extract them.
+     * @param ids For each file in files, the index of its results in results.
+     * @param also For each file in files, what else to do with each article
+     * extracted from it or null. If this is null for a file, only the
+     * articles in a time period are extracted from it.
+     * @param readAhead For reading the files.
+     * @param results The results to set for each file.
+     * @throws IOException If encountered.
+     */
+    public void run(ExecutorService pool, List<Text_Source> files, int[] ids,
+            List<Consumer<Text_Article>> also, Text_ReadAhead readAhead,
+            Text_PartialResult[] results) throws IOException {
+        int nf = files.size();
+        fileResults = new Text_PartialResult[nf];
+        fileHeadlines = new ArrayList<>(nf);
+        for (int i = 0; i < nf; i++) {
+            fileResults[i] = new Text_PartialResult(p.papers,
+                    counter.matcher.getN(), counter.nr);
+            fileHeadlines.add(counter.newHeadlines());
+        }
+        ExecutorService matcherPool = Executors.newFixedThreadPool(matchers,
+                (Runnable r) -> {
+                    Thread t = new Thread(r, "Text_ArticlePipeline");
+                    t.setDaemon(true);
+                    return t;
+                });
+        try {
+            ArrayList<Future<?>> matching = new ArrayList<>();
+            for (int m = 0; m < matchers; m++) {
+                matching.add(matcherPool.submit(() -> match()));
+            }
+            AtomicInteger next = new AtomicInteger();
+            ArrayList<Callable<Void>> extracting = new ArrayList<>();
+            for (int e = 0; e < Math.min(extractors, nf); e++) {
+                extracting.add(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < nf) {
+                        extract(files.get(i), i, also.get(i), readAhead);
+                    }
+                    return null;
+                });
+            }
+            try {
+                for (Future<Void> f : pool.invokeAll(extracting)) {
+                    f.get();
+                }
+                for (int m = 0; m < matchers; m++) {
+                    queue.put(END);
+                }
+                for (Future<?> f : matching) {
+                    f.get();
+                }
+            } catch (InterruptedException | ExecutionException ex) {
+                throw new IOException(ex);
+            }
+        } finally {
+            matcherPool.shutdownNow();
+        }
+        for (int i = 0; i < nf; i++) {
+            counter.addHeadlines(fileResults[i], ids[i], fileHeadlines.get(i));
+            results[ids[i]] = fileResults[i];
+        }
+    }
+
+    /**
+     * Extracts the articles from a file putting those in a time period onto
+     * the queue, waiting if the queue is full. Unless also is not null or
+     * articles are being stored, articles that are in no time period are
+     * skipped once their date is known (see
+     * {@link Text_ArticleParser#extract(Text_Source,
+     * java.util.function.Predicate, Consumer)}).
+     *
+     * @param input The file.
+     * @param i The index of the file.
+     * @param also What else to do with each article or null.
+     * @param readAhead For reading the file.
+     */
+    void extract(Text_Source input, int i, Consumer<Text_Article> also,
+            Text_ReadAhead readAhead) {
+        try {
+            new Text_ArticleParser(p, readAhead).extract(input,
+                    also == null ? counter::inPeriods : null,
+                    (Text_Article a) -> {
+                        if (also != null) {
+                            also.accept(a);
+                        }
+                        if (counter.inPeriods(a.date)) {
+                            try {
+                                queue.put(new Item(i, a));
+                            } catch (InterruptedException ex) {
+                                Thread.currentThread().interrupt();
+                                throw new UncheckedIOException(
+                                        new InterruptedIOException());
+                            }
+                        }
+                    });
+        } finally {
+            readAhead.release(input);
+        }
+    }
+
+    /**
+     * Takes articles from the queue, counts the terms in each and adds the
+     * counts to the results for the file it is from until told to stop. If
+     * anything is thrown, including an Error such as an OutOfMemoryError,
+     * articles are still taken until told to stop so that the extractor
+     * threads are not left waiting, and it is then rethrown.
+     *
+     * @return null.
+     * @throws InterruptedException If interrupted.
+     */
+    Void match() throws InterruptedException {
+        Throwable e = null;
+        Item item;
+        while ((item = queue.take()) != END) {
+            if (e != null) {
+                continue;
+            }
+            try {
+                int[] termCounts = counter.getTermCounts(item.article);
+                Text_PartialResult result = fileResults[item.file];
+                counter.addPaperCounts(item.article, termCounts,
+                        paperArticleCounts);
+                synchronized (result) {
+                    counter.add(item.article, termCounts, result,
+                            fileHeadlines.get(item.file));
+                }
+            } catch (Throwable ex) {
+                e = ex;
+            }
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        if (e != null) {
+            throw new IllegalStateException(e);
+        }
+        return null;
+    }
+}
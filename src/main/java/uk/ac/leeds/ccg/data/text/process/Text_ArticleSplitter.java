@@ -0,0 +1,271 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.process;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * For finding where articles start in the bytes of a LexisNexis HTML file
+ * without parsing it into a document, so that a large file can be split into
+ * parts that each hold a number of whole articles and the parts parsed in
+ * parallel.
+ *
+ * An article starts with a text node that is the name of a paper (as
+ * detected by {@link Text_ArticleParser#isArticleNode(org.jsoup.nodes.Node)})
+ * and the offset found for it is the start of the element that is a child of
+ * body that contains that text. So if the file is split at these offsets,
+ * each part is made up of whole children of body. To find the children of
+ * body, tags are tracked at the level of bytes. If the tags are not balanced
+ * in a way this can follow, no offsets are found and the file is not split.
+ */
+public class Text_ArticleSplitter {
+
+    /**
+     * The names of the elements that have no end tag.
+     */
+    static final String[] VOID_ELEMENTS = {"area", "base", "br", "col",
+        "embed", "hr", "img", "input", "link", "meta", "param", "source",
+        "track", "wbr"};
+
+    /**
+     * The names of the elements with content that is not parsed as HTML.
+     */
+    static final String[] RAW_TEXT_ELEMENTS = {"script", "style", "textarea",
+        "title"};
+
+    private Text_ArticleSplitter() {
+    }
+
+    /**
+     * @param b The bytes of an HTML file.
+     * @param papers The names of the papers.
+     * @return The offsets in b of the children of body that contain the start
+     * of an article in order, or an empty array if the file cannot be split.
+     */
+    public static int[] getArticleStarts(byte[] b, List<String> papers) {
+        byte[][] names = new byte[papers.size()][];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = papers.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        int[] r = new int[16];
+        int n = 0;
+        int l = b.length;
+        int depth = 0;
+        int bodyDepth = -1;
+        int child = -1;
+        boolean bodyEnded = false;
+        int i = 0;
+        while (i < l) {
+            if (b[i] != '<') {
+                /**
+                 * Text. Check if it is the name of a paper.
+                 */
+                int end = indexOf(b, (byte) '<', i);
+                if (bodyDepth != -1 && depth > bodyDepth
+                        && (n == 0 || r[n - 1] != child)) {
+                    for (byte[] name : names) {
+                        if (equals(b, i, end, name)) {
+                            if (n == r.length) {
+                                int[] r2 = new int[n * 2];
+                                System.arraycopy(r, 0, r2, 0, n);
+                                r = r2;
+                            }
+                            r[n] = child;
+                            n++;
+                            break;
+                        }
+                    }
+                }
+                i = end;
+            } else if (startsWith(b, i, "<!--")) {
+                i = indexOf(b, "-->", i + 4) + 3;
+            } else if (i + 1 < l && (b[i + 1] == '!' || b[i + 1] == '?')) {
+                i = indexOf(b, (byte) '>', i) + 1;
+            } else if (i + 1 < l && b[i + 1] == '/') {
+                int nameEnd = getNameEnd(b, i + 2);
+                String name = getName(b, i + 2, nameEnd);
+                if (!name.isEmpty() && !contains(VOID_ELEMENTS, name)) {
+                    depth--;
+                    if (bodyDepth != -1 && depth < bodyDepth) {
+                        if (!name.equals("body") || depth != bodyDepth - 1) {
+                            return new int[0];
+                        }
+                        bodyEnded = true;
+                        break;
+                    }
+                }
+                i = getTagEnd(b, nameEnd);
+            } else {
+                int nameEnd = getNameEnd(b, i + 1);
+                String name = getName(b, i + 1, nameEnd);
+                if (name.isEmpty()) {
+                    /**
+                     * Not a tag so this is text.
+                     */
+                    i = indexOf(b, (byte) '<', i + 1);
+                    continue;
+                }
+                if (bodyDepth != -1 && depth == bodyDepth) {
+                    child = i;
+                }
+                int tagEnd = getTagEnd(b, nameEnd);
+                boolean selfClosing = tagEnd >= 2 && b[tagEnd - 2] == '/';
+                if (name.equals("body")) {
+                    if (bodyDepth != -1) {
+                        return new int[0];
+                    }
+                    bodyDepth = depth + 1;
+                }
+                if (contains(RAW_TEXT_ELEMENTS, name)) {
+                    tagEnd = indexOfIgnoreCase(b, "</" + name, tagEnd);
+                    tagEnd = getTagEnd(b, tagEnd);
+                } else if (!selfClosing && !contains(VOID_ELEMENTS, name)) {
+                    depth++;
+                }
+                i = tagEnd;
+            }
+        }
+        if (!bodyEnded) {
+            return new int[0];
+        }
+        int[] r2 = new int[n];
+        System.arraycopy(r, 0, r2, 0, n);
+        return r2;
+    }
+
+    /**
+     * @param b The bytes.
+     * @param from The index of the start of a tag name.
+     * @return The index of the end of the tag name.
+     */
+    static int getNameEnd(byte[] b, int from) {
+        int i = from;
+        while (i < b.length && (isLetter(b[i])
+                || (i > from && b[i] >= '0' && b[i] <= '9'))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @param b The bytes.
+     * @param from The start index.
+     * @param to The end index.
+     * @return The tag name in lower case.
+     */
+    static String getName(byte[] b, int from, int to) {
+        return new String(b, from, to - from, StandardCharsets.US_ASCII)
+                .toLowerCase();
+    }
+
+    /**
+     * @param b The bytes.
+     * @param from An index in a tag after its name.
+     * @return The index after the end of the tag allowing for quoted
+     * attribute values.
+     */
+    static int getTagEnd(byte[] b, int from) {
+        int i = from;
+        while (i < b.length && b[i] != '>') {
+            if (b[i] == '"' || b[i] == '\'') {
+                i = indexOf(b, b[i], i + 1);
+            }
+            i++;
+        }
+        return Math.min(i + 1, b.length);
+    }
+
+    static boolean isLetter(byte c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    static boolean contains(String[] names, String name) {
+        for (String s : names) {
+            if (s.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean equals(byte[] b, int from, int to, byte[] s) {
+        if (to - from != s.length) {
+            return false;
+        }
+        for (int i = 0; i < s.length; i++) {
+            if (b[from + i] != s[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean startsWith(byte[] b, int from, String s) {
+        if (from + s.length() > b.length) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (b[from + i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The index of the first c in b from from or the length of b if
+     * there is none.
+     */
+    static int indexOf(byte[] b, byte c, int from) {
+        int i = from;
+        while (i < b.length && b[i] != c) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return The index of the first s in b from from or the length of b if
+     * there is none.
+     */
+    static int indexOf(byte[] b, String s, int from) {
+        for (int i = from; i + s.length() <= b.length; i++) {
+            if (startsWith(b, i, s)) {
+                return i;
+            }
+        }
+        return b.length;
+    }
+
+    /**
+     * @return The index of the first s in b from from ignoring the case of
+     * ASCII letters or the length of b if there is none.
+     */
+    static int indexOfIgnoreCase(byte[] b, String s, int from) {
+        for (int i = from; i + s.length() <= b.length; i++) {
+            int j = 0;
+            while (j < s.length() && Character.toLowerCase((char) b[i + j])
+                    == s.charAt(j)) {
+                j++;
+            }
+            if (j == s.length()) {
+                return i;
+            }
+        }
+        return b.length;
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.process;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * For storing the articles extracted from a LexisNexis HTML file in a compact
+ * binary file, so that they can be read back without parsing the HTML again.
+ *
+ * A store begins with a header: a magic number; a version; and the names of
+ * the papers that articles were extracted for (which articles are extracted
+ * depends on these). Each article is then a record: the index of the paper in
+ * the header; the date as an epoch day; and the title, section, length and
+ * body each as a length followed by UTF-8 bytes. The records are followed by
+ * {@link #END}.
+ *
+ * Stores are written using a {@link Writer} to a temporary file that is moved
+ * into place on {@link Writer#commit()}, so an incomplete store is never left
+ * in place. Stores are read using {@link #read(Path, List, Consumer)} which
+ * memory maps the file.
+ */
+public class Text_ArticleStore {
+
+    /**
+     * For identifying a store file.
+     */
+    static final int MAGIC = 0x54584153;
+
+    /**
+     * The version of the store format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * For marking the end of the records.
+     */
+    static final int END = -1;
+
+    /**
+     * For recording an article that has no date.
+     */
+    static final long NO_DATE = Long.MIN_VALUE;
+
+    private Text_ArticleStore() {
+    }
+
+    /**
+     * Reads the articles in store passing each in turn to action. Nothing is
+     * passed to action unless store is a complete store for papers.
+     *
+     * @param store The store to read.
+     * @param papers The names of the papers that the store must be for.
+     * @param action What to do with each article.
+     * @return true if store was read and false if store is not a complete
+     * store of the current version for papers.
+     * @throws IOException If encountered.
+     */
+    public static boolean read(Path store, List<String> papers,
+            Consumer<Text_Article> action) throws IOException {
+        try (FileChannel fc = FileChannel.open(store, StandardOpenOption.READ)) {
+            long size = fc.size();
+            if (size < 12 || size > Integer.MAX_VALUE) {
+                return false;
+            }
+            MappedByteBuffer b = fc.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (b.getInt() != MAGIC || b.getInt() != VERSION
+                    || b.getInt((int) size - 4) != END) {
+                return false;
+            }
+            byte[] buf = new byte[8192];
+            String[] ps = new String[b.getInt()];
+            for (int i = 0; i < ps.length; i++) {
+                buf = ensureCapacity(buf, b);
+                ps[i] = readString(b, buf);
+            }
+            if (!Arrays.asList(ps).equals(papers)) {
+                return false;
+            }
+            int pi = b.getInt();
+            while (pi != END) {
+                long epochDay = b.getLong();
+                LocalDate date = epochDay == NO_DATE ? null
+                        : LocalDate.ofEpochDay(epochDay);
+                buf = ensureCapacity(buf, b);
+                String title = readString(b, buf);
+                buf = ensureCapacity(buf, b);
+                String section = readString(b, buf);
+                buf = ensureCapacity(buf, b);
+                String length = readString(b, buf);
+                buf = ensureCapacity(buf, b);
+                String body = readString(b, buf);
+                action.accept(new Text_Article(ps[pi], date, title, section,
+                        length, body));
+                pi = b.getInt();
+            }
+            return true;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException ex) {
+            throw new IOException("Corrupt article store " + store, ex);
+        }
+    }
+
+    /**
+     * @param buf A buffer.
+     * @param b The buffer positioned at the length of the next String.
+     * @return buf or a larger buffer if buf is too small to hold the next
+     * String.
+     */
+    static byte[] ensureCapacity(byte[] buf, ByteBuffer b) {
+        int l = b.getInt(b.position());
+        if (l > buf.length) {
+            return new byte[Math.max(l, buf.length * 2)];
+        }
+        return buf;
+    }
+
+    /**
+     * @param b The buffer positioned at the length of the String to read.
+     * @param buf A buffer large enough for the bytes of the String.
+     * @return The String.
+     */
+    static String readString(ByteBuffer b, byte[] buf) {
+        int l = b.getInt();
+        b.get(buf, 0, l);
+        return new String(buf, 0, l, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes s as its length in bytes followed by its UTF-8 bytes.
+     *
+     * @param dos The stream to write to.
+     * @param s The String to write.
+     * @throws IOException If encountered.
+     */
+    static void writeString(DataOutputStream dos, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        dos.writeInt(bytes.length);
+        dos.write(bytes);
+    }
+
+    /**
+     * For writing a store.
+     */
+    public static class Writer implements Closeable {
+
+        /**
+         * The store to write.
+         */
+        final Path store;
+
+        /**
+         * The temporary file written to.
+         */
+        final Path tmp;
+
+        /**
+         * The names of the papers.
+         */
+        final List<String> papers;
+
+        /**
+         * For writing to tmp.
+         */
+        final DataOutputStream dos;
+
+        /**
+         * Set to true when tmp has been moved to store.
+         */
+        boolean committed;
+
+        /**
+         * Set to true if writing a record fails. Once set, no more records are
+         * written and the store cannot be committed.
+         */
+        boolean failed;
+
+        /**
+         * Create a new instance and write the header.
+         *
+         * @param store The store to write.
+         * @param papers The names of the papers articles are extracted for.
+         * @throws IOException If encountered.
+         */
+        public Writer(Path store, List<String> papers) throws IOException {
+            this.store = store;
+            this.papers = papers;
+            Files.createDirectories(store.getParent());
+            tmp = Files.createTempFile(store.getParent(),
+                    store.getFileName().toString(), ".tmp");
+            dos = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(tmp)));
+            dos.writeInt(MAGIC);
+            dos.writeInt(VERSION);
+            dos.writeInt(papers.size());
+            for (String p : papers) {
+                writeString(p);
+            }
+        }
+
+        /**
+         * Writes a record for article. If an IOException is encountered it is
+         * logged and {@link #failed} is set, so that a failure to write the
+         * store does not stop the articles being processed.
+         *
+         * @param article The article to write.
+         */
+        public void write(Text_Article article) {
+            if (failed) {
+                return;
+            }
+            try {
+                dos.writeInt(papers.indexOf(article.paper));
+                dos.writeLong(article.date == null ? NO_DATE
+                        : article.date.toEpochDay());
+                writeString(article.title);
+                writeString(article.section);
+                writeString(article.length);
+                writeString(article.body);
+            } catch (IOException ex) {
+                failed = true;
+                Logger.getLogger(Text_ArticleStore.class
+                        .getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+
+        private void writeString(String s) throws IOException {
+            Text_ArticleStore.writeString(dos, s);
+        }
+
+        /**
+         * Completes the store and moves it into place.
+         *
+         * @throws IOException If encountered.
+         */
+        public void commit() throws IOException {
+            if (failed) {
+                throw new IOException("Failed writing " + tmp);
+            }
+            dos.writeInt(END);
+            dos.close();
+            Files.move(tmp, store, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+        }
+
+        /**
+         * Closes this deleting the temporary file unless committed.
+         *
+         * @throws IOException If encountered.
+         */
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                dos.close();
+                Files.deleteIfExists(tmp);
+            }
+        }
+    }
+}
@@ -0,0 +1,632 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.process;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed set of non-negative ints such as article ids. The set is
+ * split into containers by the high 16 bits of each int. A container with at
+ * most {@link #ARRAY_MAX} ints stores the low 16 bits of each in a sorted
+ * char array and a container with more stores them in a bitmap of 2^16 bits.
+ * So sets of ids for terms that are in few articles take two bytes per
+ * article and sets for terms that are in many articles take at most one bit
+ * per article. The ints in a set can be sparse, dense or a mixture of the two
+ * across containers.
+ *
+ * Intersections, unions and differences are done container by container
+ * using the representations of the two containers, and the cardinality of an
+ * intersection can be had without creating it (see
+ * {@link #andCardinality(Text_Bitmap)}).
+ *
+ * In a file, the ints in an array container are written as varint encoded
+ * differences from the previous int, so a sparse set usually takes one or two
+ * bytes per int (see {@link #write(DataOutputStream)} and
+ * {@link #read(ByteBuffer)}).
+ */
+public class Text_Bitmap {
+
+    /**
+     * The maximum number of ints in an array container.
+     */
+    static final int ARRAY_MAX = 4096;
+
+    /**
+     * The number of longs in a bitmap container.
+     */
+    static final int WORDS = 1024;
+
+    /**
+     * The high 16 bits of the ints in each container in ascending order.
+     */
+    char[] keys;
+
+    /**
+     * The containers.
+     */
+    Container[] containers;
+
+    /**
+     * The number of containers.
+     */
+    int size;
+
+    /**
+     * Create a new empty instance.
+     */
+    public Text_Bitmap() {
+        this(4);
+    }
+
+    private Text_Bitmap(int capacity) {
+        keys = new char[capacity];
+        containers = new Container[capacity];
+    }
+
+    /**
+     * Adds x. This is quickest when ints are added in ascending order.
+     *
+     * @param x The int to add. This must not be negative.
+     */
+    public void add(int x) {
+        if (x < 0) {
+            throw new IllegalArgumentException("Negative int " + x);
+        }
+        char key = (char) (x >>> 16);
+        int i;
+        if (size > 0 && keys[size - 1] == key) {
+            i = size - 1;
+        } else {
+            i = Arrays.binarySearch(keys, 0, size, key);
+            if (i < 0) {
+                i = -i - 1;
+                insert(i, key, new Container());
+            }
+        }
+        containers[i].add((char) x);
+    }
+
+    private void insert(int i, char key, Container c) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = c;
+        size++;
+    }
+
+    private void append(char key, Container c) {
+        if (c != null && c.cardinality > 0) {
+            insert(size, key, c);
+        }
+    }
+
+    /**
+     * @param x The int.
+     * @return true if x is in this.
+     */
+    public boolean contains(int x) {
+        if (x < 0) {
+            return false;
+        }
+        int i = Arrays.binarySearch(keys, 0, size, (char) (x >>> 16));
+        return i >= 0 && containers[i].contains((char) x);
+    }
+
+    /**
+     * @return The number of ints in this.
+     */
+    public int getCardinality() {
+        int r = 0;
+        for (int i = 0; i < size; i++) {
+            r += containers[i].cardinality;
+        }
+        return r;
+    }
+
+    /**
+     * @return true if this is empty.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Passes each int in this to action in ascending order.
+     *
+     * @param action What to do with each int.
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    /**
+     * @return The ints in this in ascending order.
+     */
+    public int[] toArray() {
+        int[] r = new int[getCardinality()];
+        int[] n = new int[1];
+        forEach(x -> {
+            r[n[0]] = x;
+            n[0]++;
+        });
+        return r;
+    }
+
+    /**
+     * @param o The other bitmap.
+     * @return A new bitmap of the ints in both this and o.
+     */
+    public Text_Bitmap and(Text_Bitmap o) {
+        Text_Bitmap r = new Text_Bitmap(Math.max(1, Math.min(size, o.size)));
+        int i = 0;
+        int j = 0;
+        while (i < size && j < o.size) {
+            if (keys[i] < o.keys[j]) {
+                i++;
+            } else if (keys[i] > o.keys[j]) {
+                j++;
+            } else {
+                r.append(keys[i], containers[i].and(o.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param o The other bitmap.
+     * @return The number of ints in both this and o.
+     */
+    public int andCardinality(Text_Bitmap o) {
+        int r = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < o.size) {
+            if (keys[i] < o.keys[j]) {
+                i++;
+            } else if (keys[i] > o.keys[j]) {
+                j++;
+            } else {
+                r += containers[i].andCardinality(o.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param o The other bitmap.
+     * @return A new bitmap of the ints in either this or o.
+     */
+    public Text_Bitmap or(Text_Bitmap o) {
+        Text_Bitmap r = new Text_Bitmap(Math.max(1, size + o.size));
+        int i = 0;
+        int j = 0;
+        while (i < size || j < o.size) {
+            if (j == o.size || (i < size && keys[i] < o.keys[j])) {
+                r.append(keys[i], containers[i].copy());
+                i++;
+            } else if (i == size || keys[i] > o.keys[j]) {
+                r.append(o.keys[j], o.containers[j].copy());
+                j++;
+            } else {
+                r.append(keys[i], containers[i].or(o.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param o The other bitmap.
+     * @return A new bitmap of the ints in this that are not in o.
+     */
+    public Text_Bitmap andNot(Text_Bitmap o) {
+        Text_Bitmap r = new Text_Bitmap(Math.max(1, size));
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < o.size && o.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < o.size && o.keys[j] == keys[i]) {
+                r.append(keys[i], containers[i].andNot(o.containers[j]));
+            } else {
+                r.append(keys[i], containers[i].copy());
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param bitmaps The bitmaps.
+     * @return A new bitmap of the ints in any of bitmaps.
+     */
+    public static Text_Bitmap orAll(Text_Bitmap... bitmaps) {
+        Text_Bitmap r = new Text_Bitmap();
+        for (Text_Bitmap b : bitmaps) {
+            r = r.or(b);
+        }
+        return r;
+    }
+
+    /**
+     * Writes this: the number of containers; and for each container, the key,
+     * the number of ints and either the bitmap or the varint encoded
+     * differences between successive ints.
+     *
+     * @param dos The stream to write to.
+     * @throws IOException If encountered.
+     */
+    public void write(DataOutputStream dos) throws IOException {
+        dos.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            Container c = containers[i];
+            dos.writeChar(keys[i]);
+            dos.writeInt(c.cardinality);
+            if (c.bits != null) {
+                for (int w = 0; w < WORDS; w++) {
+                    dos.writeLong(c.bits[w]);
+                }
+            } else {
+                int previous = 0;
+                for (int k = 0; k < c.cardinality; k++) {
+                    int d = c.array[k] - previous;
+                    while (d > 0x7F) {
+                        dos.write((d & 0x7F) | 0x80);
+                        d >>>= 7;
+                    }
+                    dos.write(d);
+                    previous = c.array[k];
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a bitmap written by {@link #write(DataOutputStream)}.
+     *
+     * @param b The buffer to read from.
+     * @return The bitmap.
+     */
+    public static Text_Bitmap read(ByteBuffer b) {
+        int n = b.getInt();
+        Text_Bitmap r = new Text_Bitmap(Math.max(1, n));
+        for (int i = 0; i < n; i++) {
+            char key = b.getChar();
+            int cardinality = b.getInt();
+            Container c;
+            if (cardinality > ARRAY_MAX) {
+                long[] bits = new long[WORDS];
+                for (int w = 0; w < WORDS; w++) {
+                    bits[w] = b.getLong();
+                }
+                c = new Container(bits, cardinality);
+            } else {
+                char[] array = new char[cardinality];
+                int previous = 0;
+                for (int k = 0; k < cardinality; k++) {
+                    int d = 0;
+                    int shift = 0;
+                    int x;
+                    do {
+                        x = b.get();
+                        d |= (x & 0x7F) << shift;
+                        shift += 7;
+                    } while ((x & 0x80) != 0);
+                    previous += d;
+                    array[k] = (char) previous;
+                }
+                c = new Container(array, cardinality);
+            }
+            r.keys[i] = key;
+            r.containers[i] = c;
+        }
+        r.size = n;
+        return r;
+    }
+
+    /**
+     * A set of the low 16 bits of the ints that share the same high 16 bits.
+     * If there are no more than {@link #ARRAY_MAX} then these are in array,
+     * otherwise they are in bits.
+     */
+    static class Container {
+
+        /**
+         * The sorted values or null.
+         */
+        char[] array;
+
+        /**
+         * The bitmap of values or null.
+         */
+        long[] bits;
+
+        /**
+         * The number of values.
+         */
+        int cardinality;
+
+        Container() {
+            array = new char[4];
+        }
+
+        Container(char[] array, int cardinality) {
+            this.array = array;
+            this.cardinality = cardinality;
+        }
+
+        Container(long[] bits, int cardinality) {
+            this.bits = bits;
+            this.cardinality = cardinality;
+        }
+
+        /**
+         * @param bits A bitmap.
+         * @return A container for the values in bits or null if there are
+         * none.
+         */
+        static Container of(long[] bits) {
+            int c = 0;
+            for (int w = 0; w < WORDS; w++) {
+                c += Long.bitCount(bits[w]);
+            }
+            if (c == 0) {
+                return null;
+            }
+            if (c > ARRAY_MAX) {
+                return new Container(bits, c);
+            }
+            char[] a = new char[c];
+            int k = 0;
+            for (int w = 0; w < WORDS; w++) {
+                long word = bits[w];
+                while (word != 0) {
+                    a[k] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                    k++;
+                    word &= word - 1;
+                }
+            }
+            return new Container(a, c);
+        }
+
+        void add(char v) {
+            if (bits != null) {
+                long m = 1L << v;
+                if ((bits[v >>> 6] & m) == 0) {
+                    bits[v >>> 6] |= m;
+                    cardinality++;
+                }
+                return;
+            }
+            int i;
+            if (cardinality == 0 || array[cardinality - 1] < v) {
+                i = cardinality;
+            } else {
+                i = Arrays.binarySearch(array, 0, cardinality, v);
+                if (i >= 0) {
+                    return;
+                }
+                i = -i - 1;
+            }
+            if (cardinality == ARRAY_MAX) {
+                bits = toBits();
+                array = null;
+                add(v);
+                return;
+            }
+            if (cardinality == array.length) {
+                array = Arrays.copyOf(array,
+                        Math.min(ARRAY_MAX, cardinality * 2));
+            }
+            System.arraycopy(array, i, array, i + 1, cardinality - i);
+            array[i] = v;
+            cardinality++;
+        }
+
+        boolean contains(char v) {
+            if (bits != null) {
+                return (bits[v >>> 6] & (1L << v)) != 0;
+            }
+            return Arrays.binarySearch(array, 0, cardinality, v) >= 0;
+        }
+
+        /**
+         * @return A new bitmap of the values.
+         */
+        long[] toBits() {
+            if (bits != null) {
+                return bits.clone();
+            }
+            long[] r = new long[WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                r[array[i] >>> 6] |= 1L << array[i];
+            }
+            return r;
+        }
+
+        Container copy() {
+            if (bits != null) {
+                return new Container(bits.clone(), cardinality);
+            }
+            return new Container(Arrays.copyOf(array, cardinality),
+                    cardinality);
+        }
+
+        void forEach(int high, IntConsumer action) {
+            if (bits != null) {
+                for (int w = 0; w < WORDS; w++) {
+                    long word = bits[w];
+                    while (word != 0) {
+                        action.accept(high | ((w << 6)
+                                + Long.numberOfTrailingZeros(word)));
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    action.accept(high | array[i]);
+                }
+            }
+        }
+
+        Container and(Container o) {
+            if (bits != null && o.bits != null) {
+                long[] r = new long[WORDS];
+                for (int w = 0; w < WORDS; w++) {
+                    r[w] = bits[w] & o.bits[w];
+                }
+                return of(r);
+            }
+            if (bits != null) {
+                return o.and(this);
+            }
+            char[] r = new char[cardinality];
+            int k = 0;
+            if (o.bits != null) {
+                for (int i = 0; i < cardinality; i++) {
+                    if (o.contains(array[i])) {
+                        r[k] = array[i];
+                        k++;
+                    }
+                }
+            } else {
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < o.cardinality) {
+                    if (array[i] < o.array[j]) {
+                        i++;
+                    } else if (array[i] > o.array[j]) {
+                        j++;
+                    } else {
+                        r[k] = array[i];
+                        k++;
+                        i++;
+                        j++;
+                    }
+                }
+            }
+            return k == 0 ? null : new Container(r, k);
+        }
+
+        int andCardinality(Container o) {
+            int r = 0;
+            if (bits != null && o.bits != null) {
+                for (int w = 0; w < WORDS; w++) {
+                    r += Long.bitCount(bits[w] & o.bits[w]);
+                }
+            } else if (bits != null) {
+                r = o.andCardinality(this);
+            } else if (o.bits != null) {
+                for (int i = 0; i < cardinality; i++) {
+                    if (o.contains(array[i])) {
+                        r++;
+                    }
+                }
+            } else {
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < o.cardinality) {
+                    if (array[i] < o.array[j]) {
+                        i++;
+                    } else if (array[i] > o.array[j]) {
+                        j++;
+                    } else {
+                        r++;
+                        i++;
+                        j++;
+                    }
+                }
+            }
+            return r;
+        }
+
+        Container or(Container o) {
+            if (bits == null && o.bits == null
+                    && cardinality + o.cardinality <= ARRAY_MAX) {
+                char[] r = new char[cardinality + o.cardinality];
+                int i = 0;
+                int j = 0;
+                int k = 0;
+                while (i < cardinality || j < o.cardinality) {
+                    if (j == o.cardinality
+                            || (i < cardinality && array[i] < o.array[j])) {
+                        r[k] = array[i];
+                        i++;
+                    } else if (i == cardinality || array[i] > o.array[j]) {
+                        r[k] = o.array[j];
+                        j++;
+                    } else {
+                        r[k] = array[i];
+                        i++;
+                        j++;
+                    }
+                    k++;
+                }
+                return new Container(r, k);
+            }
+            long[] r = toBits();
+            if (o.bits != null) {
+                for (int w = 0; w < WORDS; w++) {
+                    r[w] |= o.bits[w];
+                }
+            } else {
+                for (int j = 0; j < o.cardinality; j++) {
+                    r[o.array[j] >>> 6] |= 1L << o.array[j];
+                }
+            }
+            return of(r);
+        }
+
+        Container andNot(Container o) {
+            if (bits == null) {
+                char[] r = new char[cardinality];
+                int k = 0;
+                for (int i = 0; i < cardinality; i++) {
+                    if (!o.contains(array[i])) {
+                        r[k] = array[i];
+                        k++;
+                    }
+                }
+                return k == 0 ? null : new Container(r, k);
+            }
+            long[] r = bits.clone();
+            if (o.bits != null) {
+                for (int w = 0; w < WORDS; w++) {
+                    r[w] &= ~o.bits[w];
+                }
+            } else {
+                for (int j = 0; j < o.cardinality; j++) {
+                    r[o.array[j] >>> 6] &= ~(1L << o.array[j]);
+                }
+            }
+            return of(r);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.process;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+
+/**
+ * For parsing dates written like "March 12, 2016 Saturday" without creating
+ * any intermediate strings. The name of the month can be in any case and is
+ * separated from the day of the month by a given separator (a space in the
+ * dates in articles, and some HTML in the lines of the older LexisNexis
+ * export format). Anything can follow the year after a space, so this is
+ * also the format of the Guardian dates that end with a time such as "March
+ * 12, 2016 Saturday 10:35 PM GMT".
+ *
+ * The most recently parsed dates are cached, so successive articles with the
+ * same date share a LocalDate. The cache can be used by threads concurrently:
+ * an entry can be overwritten by another thread, but only with a date that
+ * is then checked before it is returned.
+ */
+public class Text_DateParser {
+
+    /**
+     * The months in upper case indexed by month value - 1.
+     */
+    static final String[] MONTHS = new String[12];
+
+    static {
+        for (Month m : Month.values()) {
+            MONTHS[m.ordinal()] = m.name();
+        }
+    }
+
+    /**
+     * The size of the cache (a power of 2).
+     */
+    static final int CACHE_SIZE = 64;
+
+    /**
+     * The cache of dates indexed by a hash of the date.
+     */
+    final LocalDate[] cache = new LocalDate[CACHE_SIZE];
+
+    /**
+     * Create a new instance.
+     */
+    public Text_DateParser() {
+    }
+
+    /**
+     * Parses the date in s from from. The date is a month name, separator,
+     * day of month, a comma and a space, and year, which is then either at
+     * the end of s or followed by a space. If dayName is true, the space
+     * after the year must be followed by a letter (the start of the name of
+     * the day).
+     *
+     * @param s The characters.
+     * @param from The index in s of the start of the date.
+     * @param separator The separator after the month name.
+     * @param dayName Whether the year must be followed by a day name.
+     * @return The date or null if there is not a valid date in this format
+     * in s at from.
+     */
+    public LocalDate parse(CharSequence s, int from, String separator,
+            boolean dayName) {
+        int l = s.length();
+        /**
+         * Month.
+         */
+        int i = from;
+        while (i < l && isLetter(s.charAt(i))) {
+            i++;
+        }
+        int month = getMonth(s, from, i);
+        if (month == 0) {
+            return null;
+        }
+        /**
+         * Separator.
+         */
+        int sl = separator.length();
+        if (i + sl > l) {
+            return null;
+        }
+        for (int j = 0; j < sl; j++) {
+            if (s.charAt(i + j) != separator.charAt(j)) {
+                return null;
+            }
+        }
+        i += sl;
+        /**
+         * Day of month.
+         */
+        int start = i;
+        int day = 0;
+        while (i < l && isDigit(s.charAt(i)) && i - start < 9) {
+            day = day * 10 + s.charAt(i) - '0';
+            i++;
+        }
+        if (i == start || i + 2 > l || s.charAt(i) != ','
+                || s.charAt(i + 1) != ' ') {
+            return null;
+        }
+        i += 2;
+        /**
+         * Year.
+         */
+        start = i;
+        int year = 0;
+        while (i < l && isDigit(s.charAt(i)) && i - start < 9) {
+            year = year * 10 + s.charAt(i) - '0';
+            i++;
+        }
+        if (i == start) {
+            return null;
+        }
+        if (i < l) {
+            if (s.charAt(i) != ' ') {
+                return null;
+            }
+            if (dayName && (i + 1 == l || !isLetter(s.charAt(i + 1)))) {
+                return null;
+            }
+        } else if (dayName) {
+            return null;
+        }
+        return get(year, month, day);
+    }
+
+    /**
+     * @param year The year.
+     * @param month The month (1 to 12).
+     * @param day The day of the month.
+     * @return The date or null if it is not valid.
+     */
+    LocalDate get(int year, int month, int day) {
+        if (day < 1 || day > 31 || year < LocalDate.MIN.getYear()
+                || year > LocalDate.MAX.getYear()) {
+            return null;
+        }
+        int h = (year * 372 + month * 31 + day) & (CACHE_SIZE - 1);
+        LocalDate r = cache[h];
+        if (r != null && r.getDayOfMonth() == day
+                && r.getMonthValue() == month && r.getYear() == year) {
+            return r;
+        }
+        if (day > Month.of(month).length(Year.isLeap(year))) {
+            return null;
+        }
+        r = LocalDate.of(year, month, day);
+        cache[h] = r;
+        return r;
+    }
+
+    /**
+     * @param s The characters.
+     * @param from The start index.
+     * @param to The end index.
+     * @return The value of the month named by the characters in s from from
+     * to to ignoring case, or 0 if they are not the name of a month.
+     */
+    static int getMonth(CharSequence s, int from, int to) {
+        int l = to - from;
+        for (int m = 0; m < 12; m++) {
+            String name = MONTHS[m];
+            if (name.length() == l) {
+                int j = 0;
+                while (j < l && toUpperCase(s.charAt(from + j))
+                        == name.charAt(j)) {
+                    j++;
+                }
+                if (j == l) {
+                    return m + 1;
+                }
+            }
+        }
+        return 0;
+    }
+
+    static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    static char toUpperCase(char c) {
+        return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+    }
+}
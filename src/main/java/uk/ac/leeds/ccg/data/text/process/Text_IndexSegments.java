@@ -0,0 +1,617 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.process;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import uk.ac.leeds.ccg.data.text.io.Text_Source;
+import uk.ac.leeds.ccg.generic.time.Generic_LocalDateRange;
+
+/**
+ * A {@link Text_ArticleIndex} for a directory of LexisNexis HTML files split
+ * into segments by the month of the articles. Each segment is an index of the
+ * articles for a month from a batch of files, and has the earliest and latest
+ * dates of the articles in it, so counts for date ranges only need the
+ * segments that overlap the ranges (see {@link #getSegments(List)}).
+ *
+ * Files that are new since the segments were written are added as new
+ * segments without changing the existing segments (see
+ * {@link #append(List)}). If any file that the segments are for has changed or
+ * gone then all the segments are removed and the segments are built again.
+ * Segments for the same month accumulate as batches of files are added, so
+ * segments with fewer than {@link #smallSegmentArticles} articles in the same
+ * month are merged into one (see {@link #merge()}), which can be done in the
+ * background (see {@link #mergeInBackground(ExecutorService)}).
+ *
+ * The segments are in a directory with a manifest. The manifest has: a magic
+ * number; a version; the names of the papers; the number of the next
+ * segment; the files (the id (see {@link Text_Source}), last modified time
+ * and length of each); and
+ * the segments (the name, the month, the earliest and latest dates as epoch
+ * days, the number of articles and the indexes of the files of each). The
+ * manifest is replaced whenever the segments change. Articles without a date
+ * are not counted for any date range and are not put in any segment.
+ */
+public class Text_IndexSegments {
+
+    /**
+     * For identifying a manifest file.
+     */
+    static final int MAGIC = 0x54585347;
+
+    /**
+     * The version of the manifest format.
+     */
+    static final int VERSION = 2;
+
+    /**
+     * The name of the manifest file.
+     */
+    static final String MANIFEST = "segments";
+
+    /**
+     * The directory of the segments.
+     */
+    final Path dir;
+
+    /**
+     * The names of the papers.
+     */
+    final List<String> papers;
+
+    /**
+     * Segments with fewer articles than this in the same month are merged.
+     */
+    int smallSegmentArticles = 1000;
+
+    /**
+     * The number of the next segment to be written.
+     */
+    int next;
+
+    /**
+     * The files the segments are for.
+     */
+    final ArrayList<Source> sources;
+
+    /**
+     * The segments in the order they were added.
+     */
+    final ArrayList<Segment> segments;
+
+    /**
+     * For looking up the files the segments are for by id. This is set in
+     * {@link #update(List)}.
+     */
+    final HashMap<String, Text_Source> files;
+
+    /**
+     * Set to true if the manifest is not for the current version or papers.
+     */
+    boolean reset;
+
+    private Text_IndexSegments(Path dir, List<String> papers) {
+        this.dir = dir;
+        this.papers = papers;
+        sources = new ArrayList<>();
+        segments = new ArrayList<>();
+        files = new HashMap<>();
+    }
+
+    /**
+     * Opens the segments in dir.
+     *
+     * @param dir The directory of the segments.
+     * @param papers The names of the papers that the segments must be for.
+     * @return The segments, which are empty if there is no manifest in dir or
+     * if it is not of the current version for papers.
+     * @throws IOException If encountered.
+     */
+    public static Text_IndexSegments open(Path dir, List<String> papers)
+            throws IOException {
+        Text_IndexSegments r = new Text_IndexSegments(dir, papers);
+        Path path = dir.resolve(MANIFEST);
+        if (!Files.exists(path)) {
+            r.reset = Files.exists(dir);
+            return r;
+        }
+        try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = fc.size();
+            if (size < 12 || size > Integer.MAX_VALUE) {
+                r.reset = true;
+                return r;
+            }
+            MappedByteBuffer b = fc.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (b.getInt() != MAGIC || b.getInt() != VERSION
+                    || b.getInt((int) size - 4) != Text_ArticleStore.END) {
+                r.reset = true;
+                return r;
+            }
+            byte[] buf = new byte[8192];
+            String[] ps = new String[b.getInt()];
+            for (int i = 0; i < ps.length; i++) {
+                buf = Text_ArticleStore.ensureCapacity(buf, b);
+                ps[i] = Text_ArticleStore.readString(b, buf);
+            }
+            if (!Arrays.asList(ps).equals(papers)) {
+                r.reset = true;
+                return r;
+            }
+            r.next = b.getInt();
+            int nf = b.getInt();
+            for (int f = 0; f < nf; f++) {
+                buf = Text_ArticleStore.ensureCapacity(buf, b);
+                String id = Text_ArticleStore.readString(b, buf);
+                r.sources.add(new Source(id, b.getLong(), b.getLong()));
+            }
+            int ns = b.getInt();
+            for (int s = 0; s < ns; s++) {
+                buf = Text_ArticleStore.ensureCapacity(buf, b);
+                String name = Text_ArticleStore.readString(b, buf);
+                int month = b.getInt();
+                long minDay = b.getLong();
+                long maxDay = b.getLong();
+                int na = b.getInt();
+                int[] fs = new int[b.getInt()];
+                for (int i = 0; i < fs.length; i++) {
+                    fs[i] = b.getInt();
+                }
+                r.segments.add(new Segment(name, month, minDay, maxDay, na,
+                        fs));
+            }
+            return r;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException ex) {
+            throw new IOException("Corrupt segments manifest " + path, ex);
+        }
+    }
+
+    /**
+     * Checks the segments are for files as they are now. If any file that
+     * the segments are for has changed or is not in files then all the
+     * segments are removed.
+     *
+     * @param files The files.
+     * @return The files in files that the segments are not for.
+     * @throws IOException If encountered.
+     */
+    public synchronized List<Text_Source> update(List<Text_Source> files) throws IOException {
+        this.files.clear();
+        for (Text_Source f : files) {
+            this.files.put(f.getId(), f);
+        }
+        for (Source s : sources) {
+            Text_Source f = this.files.get(s.id);
+            if (f == null || f.lastModified() != s.lastModified
+                    || f.length() != s.length) {
+                reset = true;
+                break;
+            }
+        }
+        if (reset) {
+            clear();
+        }
+        HashMap<String, Source> sourceIds = new HashMap<>();
+        for (Source s : sources) {
+            sourceIds.put(s.id, s);
+        }
+        ArrayList<Text_Source> r = new ArrayList<>();
+        for (Text_Source f : files) {
+            if (!sourceIds.containsKey(f.getId())) {
+                r.add(f);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Removes all the segments and any other files in dir.
+     */
+    private void clear() throws IOException {
+        sources.clear();
+        segments.clear();
+        next = 0;
+        if (Files.exists(dir)) {
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+                for (Path p : ds) {
+                    Files.delete(p);
+                }
+            }
+        }
+        reset = false;
+    }
+
+    /**
+     * @param dates The date ranges.
+     * @return The segments with articles in any of the date ranges in the
+     * order they were added.
+     */
+    public synchronized List<Segment> getSegments(
+            List<Generic_LocalDateRange> dates) {
+        ArrayList<Segment> r = new ArrayList<>();
+        for (Segment s : segments) {
+            for (Generic_LocalDateRange range : dates) {
+                if (s.overlaps(range)) {
+                    r.add(s);
+                    break;
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param s The segment.
+     * @return The index file of s.
+     */
+    public Path getPath(Segment s) {
+        return dir.resolve(s.name);
+    }
+
+    /**
+     * @param s The segment.
+     * @return The files of s.
+     */
+    public synchronized List<Text_Source> getFiles(Segment s) {
+        ArrayList<Text_Source> r = new ArrayList<>();
+        for (int f : s.files) {
+            r.add(files.get(sources.get(f).id));
+        }
+        return r;
+    }
+
+    /**
+     * @param s The segment.
+     * @return The index of s.
+     * @throws IOException If the index is missing or is not for the files of
+     * s as they are now.
+     */
+    public Text_ArticleIndex getIndex(Segment s) throws IOException {
+        Text_ArticleIndex r = Text_ArticleIndex.open(getPath(s), papers,
+                getFiles(s));
+        if (r == null) {
+            throw new IOException("Missing or stale index segment "
+                    + getPath(s));
+        }
+        return r;
+    }
+
+    /**
+     * For adding segments for a batch of new files.
+     *
+     * @param newFiles The files to add segments for.
+     * @return An appender to pass the articles of newFiles to and then commit.
+     */
+    public Appender append(List<Text_Source> newFiles) {
+        return new Appender(newFiles);
+    }
+
+    /**
+     * Merges the segments with fewer than smallSegmentArticles articles for
+     * each month into a single segment.
+     *
+     * @throws IOException If encountered.
+     */
+    public synchronized void merge() throws IOException {
+        TreeMap<Integer, ArrayList<Segment>> small = new TreeMap<>();
+        for (Segment s : segments) {
+            if (s.numberOfArticles < smallSegmentArticles) {
+                ArrayList<Segment> ss = small.get(s.month);
+                if (ss == null) {
+                    ss = new ArrayList<>();
+                    small.put(s.month, ss);
+                }
+                ss.add(s);
+            }
+        }
+        ArrayList<Path> merged = new ArrayList<>();
+        for (ArrayList<Segment> ss : small.values()) {
+            if (ss.size() < 2) {
+                continue;
+            }
+            ArrayList<Text_ArticleIndex> indexes = new ArrayList<>();
+            ArrayList<List<Text_Source>> fs = new ArrayList<>();
+            int na = 0;
+            long minDay = Long.MAX_VALUE;
+            long maxDay = Long.MIN_VALUE;
+            int nf = 0;
+            for (Segment s : ss) {
+                indexes.add(getIndex(s));
+                fs.add(getFiles(s));
+                na += s.numberOfArticles;
+                minDay = Math.min(minDay, s.minDay);
+                maxDay = Math.max(maxDay, s.maxDay);
+                nf += s.files.length;
+            }
+            int[] sfs = new int[nf];
+            nf = 0;
+            for (Segment s : ss) {
+                System.arraycopy(s.files, 0, sfs, nf, s.files.length);
+                nf += s.files.length;
+            }
+            Segment m = newSegment(ss.get(0).month, minDay, maxDay, na, sfs);
+            Text_ArticleIndex.merge(papers, indexes, fs, getPath(m));
+            segments.set(segments.indexOf(ss.get(0)), m);
+            for (Segment s : ss) {
+                segments.remove(s);
+                merged.add(getPath(s));
+            }
+        }
+        if (!merged.isEmpty()) {
+            writeManifest();
+            for (Path p : merged) {
+                Files.deleteIfExists(p);
+                Files.deleteIfExists(Text_TermBitmaps.getPath(p));
+            }
+        }
+    }
+
+    /**
+     * Submits {@link #merge()} to executor.
+     *
+     * @param executor The executor to merge in.
+     * @return The Future of the merge.
+     */
+    public Future<?> mergeInBackground(ExecutorService executor) {
+        return executor.submit(() -> {
+            merge();
+            return null;
+        });
+    }
+
+    private Segment newSegment(int month, long minDay, long maxDay, int na,
+            int[] fs) {
+        YearMonth ym = YearMonth.of(month / 12, month % 12 + 1);
+        String name = ym + "_" + next + ".idx";
+        next++;
+        return new Segment(name, month, minDay, maxDay, na, fs);
+    }
+
+    /**
+     * Writes the manifest via a temporary file.
+     */
+    private void writeManifest() throws IOException {
+        Path path = dir.resolve(MANIFEST);
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, MANIFEST, ".tmp");
+        try {
+            try (DataOutputStream dos = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                dos.writeInt(MAGIC);
+                dos.writeInt(VERSION);
+                dos.writeInt(papers.size());
+                for (String p : papers) {
+                    Text_ArticleStore.writeString(dos, p);
+                }
+                dos.writeInt(next);
+                dos.writeInt(sources.size());
+                for (Source s : sources) {
+                    Text_ArticleStore.writeString(dos, s.id);
+                    dos.writeLong(s.lastModified);
+                    dos.writeLong(s.length);
+                }
+                dos.writeInt(segments.size());
+                for (Segment s : segments) {
+                    Text_ArticleStore.writeString(dos, s.name);
+                    dos.writeInt(s.month);
+                    dos.writeLong(s.minDay);
+                    dos.writeLong(s.maxDay);
+                    dos.writeInt(s.numberOfArticles);
+                    dos.writeInt(s.files.length);
+                    for (int f : s.files) {
+                        dos.writeInt(f);
+                    }
+                }
+                dos.writeInt(Text_ArticleStore.END);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * A file that segments are for.
+     */
+    static class Source {
+
+        final String id;
+
+        final long lastModified;
+
+        final long length;
+
+        Source(String id, long lastModified, long length) {
+            this.id = id;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+
+    /**
+     * A segment.
+     */
+    public static class Segment {
+
+        /**
+         * The name of the index file.
+         */
+        final String name;
+
+        /**
+         * The month as the number of months since year 0.
+         */
+        final int month;
+
+        /**
+         * The earliest date of the articles as an epoch day.
+         */
+        final long minDay;
+
+        /**
+         * The latest date of the articles as an epoch day.
+         */
+        final long maxDay;
+
+        /**
+         * The number of articles.
+         */
+        final int numberOfArticles;
+
+        /**
+         * The indexes of the files of the index in sources.
+         */
+        final int[] files;
+
+        Segment(String name, int month, long minDay, long maxDay,
+                int numberOfArticles, int[] files) {
+            this.name = name;
+            this.month = month;
+            this.minDay = minDay;
+            this.maxDay = maxDay;
+            this.numberOfArticles = numberOfArticles;
+            this.files = files;
+        }
+
+        /**
+         * @param range The date range.
+         * @return true if any articles in the segment may be after the start
+         * and before the end of range.
+         */
+        public boolean overlaps(Generic_LocalDateRange range) {
+            return maxDay > range.getStart().toEpochDay()
+                    && minDay < range.getEnd().toEpochDay();
+        }
+
+        /**
+         * @return The number of articles.
+         */
+        public int getNumberOfArticles() {
+            return numberOfArticles;
+        }
+    }
+
+    /**
+     * For adding segments for a batch of new files. Articles can be added
+     * for different files concurrently, provided the articles for each file
+     * are added by a single thread in order (see
+     * {@link Text_ArticleIndex.Builder}).
+     */
+    public class Appender {
+
+        /**
+         * The new files.
+         */
+        final List<Text_Source> newFiles;
+
+        /**
+         * A builder for each month keyed by month.
+         */
+        final ConcurrentHashMap<Integer, Month> months;
+
+        Appender(List<Text_Source> newFiles) {
+            this.newFiles = newFiles;
+            months = new ConcurrentHashMap<>();
+        }
+
+        /**
+         * Adds an article.
+         *
+         * @param file The index of the file in newFiles the article is from.
+         * @param article The article.
+         */
+        public void add(int file, Text_Article article) {
+            if (article.date == null) {
+                return;
+            }
+            int month = article.date.getYear() * 12
+                    + article.date.getMonthValue() - 1;
+            Month m = months.computeIfAbsent(month, k -> new Month(
+                    new Text_ArticleIndex.Builder(papers, newFiles)));
+            m.builder.add(file, article);
+            m.add(article.date.toEpochDay());
+        }
+
+        /**
+         * Writes a segment for each month that articles have been added for
+         * and then the manifest.
+         *
+         * @throws IOException If encountered.
+         */
+        public void commit() throws IOException {
+            synchronized (Text_IndexSegments.this) {
+                int[] fs = new int[newFiles.size()];
+                for (int f = 0; f < fs.length; f++) {
+                    Text_Source file = newFiles.get(f);
+                    fs[f] = sources.size();
+                    sources.add(new Source(file.getId(),
+                            file.lastModified(), file.length()));
+                    files.put(file.getId(), file);
+                }
+                for (Integer month : new TreeMap<>(months).keySet()) {
+                    Month m = months.get(month);
+                    Segment s = newSegment(month, m.minDay, m.maxDay,
+                            m.numberOfArticles, fs);
+                    m.builder.write(getPath(s));
+                    segments.add(s);
+                }
+                writeManifest();
+            }
+        }
+    }
+
+    /**
+     * The builder and the dates and number of articles for a month.
+     */
+    static class Month {
+
+        final Text_ArticleIndex.Builder builder;
+
+        long minDay = Long.MAX_VALUE;
+
+        long maxDay = Long.MIN_VALUE;
+
+        int numberOfArticles;
+
+        Month(Text_ArticleIndex.Builder builder) {
+            this.builder = builder;
+        }
+
+        synchronized void add(long day) {
+            minDay = Math.min(minDay, day);
+            maxDay = Math.max(maxDay, day);
+            numberOfArticles++;
+        }
+    }
+}
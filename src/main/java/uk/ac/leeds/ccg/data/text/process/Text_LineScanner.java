@@ -0,0 +1,225 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.process;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * For scanning the lines of a file at the level of bytes. The file is memory
+ * mapped and each line is found in turn in the same way as by
+ * {@link java.io.BufferedReader#readLine()} (lines end with a line feed, a
+ * carriage return or a carriage return followed by a line feed). A line can
+ * then be tested for starting with a marker and the words in it counted
+ * (see {@link #getLowerCaseASCII()}) without it being decoded, so only the lines that are needed as text are
+ * decoded. The file is assumed to be UTF-8 encoded.
+ */
+public class Text_LineScanner {
+
+    /**
+     * For mapping ASCII bytes to lower case.
+     */
+    static final byte[] LOWER = new byte[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            LOWER[i] = (byte) (i >= 'A' && i <= 'Z' ? i + ('a' - 'A') : i);
+        }
+    }
+
+    /**
+     * The file content.
+     */
+    final MappedByteBuffer buffer;
+
+    /**
+     * The index in buffer of the start of the current line.
+     */
+    int start;
+
+    /**
+     * The index in buffer of the end of the current line (excluding any line
+     * terminator).
+     */
+    int end;
+
+    /**
+     * The index in buffer of the start of the next line.
+     */
+    int next;
+
+    /**
+     * Create a new instance for scanning the lines of the file at path.
+     *
+     * @param path The path of the file.
+     * @throws IOException If encountered, including if the file is too large
+     * to be mapped in one go.
+     */
+    public Text_LineScanner(Path path) throws IOException {
+        try (FileChannel fc = FileChannel.open(path,
+                StandardOpenOption.READ)) {
+            long size = fc.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(path + " is too large to map.");
+            }
+            buffer = fc.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /**
+     * Moves to the next line.
+     *
+     * @return false if there are no more lines and true otherwise.
+     */
+    public boolean next() {
+        int limit = buffer.limit();
+        if (next >= limit) {
+            return false;
+        }
+        start = next;
+        int i = start;
+        while (i < limit) {
+            byte b = buffer.get(i);
+            if (b == '\n') {
+                next = i + 1;
+                break;
+            } else if (b == '\r') {
+                next = i + 1;
+                if (next < limit && buffer.get(next) == '\n') {
+                    next++;
+                }
+                break;
+            }
+            i++;
+        }
+        if (i == limit) {
+            next = limit;
+        }
+        end = i;
+        return true;
+    }
+
+    /**
+     * @param marker The bytes to test for.
+     * @return true if the current line starts with marker.
+     */
+    public boolean startsWith(byte[] marker) {
+        if (end - start < marker.length) {
+            return false;
+        }
+        for (int i = 0; i < marker.length; i++) {
+            if (buffer.get(start + i) != marker[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the current line is all ASCII.
+     */
+    public boolean isASCII() {
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The current line decoded.
+     */
+    public String getLine() {
+        byte[] b = new byte[end - start];
+        buffer.get(start, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return A view of the current line in lower case. This should only be
+     * used if the current line is all ASCII (see {@link #isASCII()}) and only
+     * until the next line is moved to.
+     */
+    public CharSequence getLowerCaseASCII() {
+        return new ASCII(start, end, true);
+    }
+
+    /**
+     * @return A view of the current line as ASCII. Each byte is a character,
+     * so this is the same as the line decoded up to the first byte that is
+     * not ASCII. This should only be used until the next line is moved to.
+     */
+    public CharSequence getASCII() {
+        return new ASCII(start, end, false);
+    }
+
+    /**
+     * A view of part of buffer as ASCII characters.
+     */
+    class ASCII implements CharSequence {
+
+        /**
+         * The index in buffer of the start.
+         */
+        final int from;
+
+        /**
+         * The index in buffer of the end.
+         */
+        final int to;
+
+        /**
+         * Whether the view is in lower case.
+         */
+        final boolean lowerCase;
+
+        ASCII(int from, int to, boolean lowerCase) {
+            this.from = from;
+            this.to = to;
+            this.lowerCase = lowerCase;
+        }
+
+        @Override
+        public int length() {
+            return to - from;
+        }
+
+        @Override
+        public char charAt(int index) {
+            int b = buffer.get(from + index) & 0xff;
+            return (char) (lowerCase ? LOWER[b] & 0xff : b);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new ASCII(from + start, from + end, lowerCase);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(to - from);
+            for (int i = 0; i < to - from; i++) {
+                sb.append(charAt(i));
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.process;
+
+/**
+ * For describing how the articles of a newspaper are laid out where this
+ * differs between papers. A paper is identified by its name appearing as the
+ * text of a node at the start of each of its articles.
+ */
+public class Text_Paper {
+
+    /**
+     * The name of the paper.
+     */
+    public final String name;
+
+    /**
+     * What the text of the date line of an article ends with. For most papers
+     * the date line ends with the name of the day, but for some it ends with
+     * a time.
+     */
+    public final String dateEnd;
+
+    /**
+     * Whether articles have a SECTION line.
+     */
+    public final boolean hasSection;
+
+    /**
+     * Create a new instance for a paper with a date line ending with the day
+     * name and a SECTION line.
+     *
+     * @param name The name of the paper.
+     */
+    public Text_Paper(String name) {
+        this(name, "day", true);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param name The name of the paper.
+     * @param dateEnd What the text of the date line of an article ends with.
+     * @param hasSection Whether articles have a SECTION line.
+     */
+    public Text_Paper(String name, String dateEnd, boolean hasSection) {
+        this.name = name;
+        this.dateEnd = dateEnd;
+        this.hasSection = hasSection;
+    }
+
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.process;
+
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * For counting articles by date range, paper and day of week. Counts can be
+ * added to by many threads at once without locking or losing updates. Each
+ * count is held in a number of stripes of a single {@link AtomicLongArray}
+ * indexed by date range, paper id and {@link DayOfWeek#ordinal()}. A thread
+ * adds to the cell in the stripe for that thread and a count is the sum of
+ * the cells for it in all the stripes, so threads adding to the same count
+ * do not contend for the same cell. Stripes are padded so that the cells of
+ * different stripes are not in the same cache line.
+ */
+public class Text_PaperDayCounts {
+
+    /**
+     * The number of days in a week.
+     */
+    static final int DAYS = 7;
+
+    /**
+     * The number of longs in a cache line.
+     */
+    static final int LINE = 8;
+
+    /**
+     * The distinct papers in order. The id of a paper is its index.
+     */
+    final ArrayList<String> papers;
+
+    /**
+     * For looking up the id of a paper.
+     */
+    final HashMap<String, Integer> ids;
+
+    /**
+     * The number of date ranges.
+     */
+    final int nr;
+
+    /**
+     * The number of counts.
+     */
+    final int size;
+
+    /**
+     * The number of stripes (a power of 2).
+     */
+    final int stripes;
+
+    /**
+     * The distance between the cells for a count in consecutive stripes.
+     */
+    final int stride;
+
+    /**
+     * The cells. The cell in stripe s for date range r, paper id p and day d
+     * is at index {@code s * stride + (r * papers.size() + p) * DAYS
+     * + d.ordinal()}.
+     */
+    final AtomicLongArray cells;
+
+    /**
+     * Create a new instance with all counts zero and a single stripe.
+     *
+     * @param papers The names of the papers. Any duplicates are ignored.
+     * @param nr The number of date ranges.
+     */
+    public Text_PaperDayCounts(List<String> papers, int nr) {
+        this(papers, nr, 1);
+    }
+
+    /**
+     * Create a new instance with all counts zero.
+     *
+     * @param papers The names of the papers. Any duplicates are ignored.
+     * @param nr The number of date ranges.
+     * @param threads The number of threads expected to add at once. The
+     * number of stripes is the smallest power of 2 that is at least this.
+     */
+    public Text_PaperDayCounts(List<String> papers, int nr, int threads) {
+        this.papers = new ArrayList<>();
+        ids = new HashMap<>();
+        for (String p : papers) {
+            if (!ids.containsKey(p)) {
+                ids.put(p, this.papers.size());
+                this.papers.add(p);
+            }
+        }
+        this.nr = nr;
+        size = nr * this.papers.size() * DAYS;
+        int s = 1;
+        while (s < threads) {
+            s <<= 1;
+        }
+        stripes = s;
+        stride = s == 1 ? size : (size + 2 * LINE - 1) / LINE * LINE;
+        cells = new AtomicLongArray(s == 1 ? size : s * stride);
+    }
+
+    /**
+     * @return The distinct papers in order.
+     */
+    public List<String> getPapers() {
+        return papers;
+    }
+
+    /**
+     * @param paper The paper.
+     * @return The id of paper or -1 if paper is not one of the papers.
+     */
+    public int getId(String paper) {
+        Integer r = ids.get(paper);
+        return r == null ? -1 : r;
+    }
+
+    private int index(int r, int p, DayOfWeek day) {
+        return (r * papers.size() + p) * DAYS + day.ordinal();
+    }
+
+    /**
+     * @return The index of the first cell in the stripe of the current
+     * thread.
+     */
+    private int stripe() {
+        if (stripes == 1) {
+            return 0;
+        }
+        int h = Long.hashCode(Thread.currentThread().getId());
+        h ^= h >>> 16;
+        return (h & (stripes - 1)) * stride;
+    }
+
+    /**
+     * Adds one to the count for date range r, paper and day.
+     *
+     * @param r The date range index.
+     * @param paper The paper.
+     * @param day The day.
+     */
+    public void add(int r, String paper, DayOfWeek day) {
+        add(r, getPaperId(paper), day, 1);
+    }
+
+    /**
+     * Adds count to the count for date range r, paper id p and day.
+     *
+     * @param r The date range index.
+     * @param p The paper id.
+     * @param day The day.
+     * @param count The count to add.
+     */
+    public void add(int r, int p, DayOfWeek day, long count) {
+        cells.getAndAdd(stripe() + index(r, p, day), count);
+    }
+
+    /**
+     * Adds the counts in c to these counts. Papers in c that are not one of
+     * these papers are ignored.
+     *
+     * @param c The counts to add. This must be for the same number of date
+     * ranges.
+     * @return this
+     */
+    public Text_PaperDayCounts add(Text_PaperDayCounts c) {
+        if (c.nr != nr) {
+            throw new IllegalArgumentException("Expecting counts for " + nr
+                    + " date ranges, but got counts for " + c.nr
+                    + " date ranges.");
+        }
+        long[] cs = c.snapshot();
+        for (int r = 0; r < nr; r++) {
+            for (int cp = 0; cp < c.papers.size(); cp++) {
+                int p = getId(c.papers.get(cp));
+                if (p != -1) {
+                    for (DayOfWeek day : DayOfWeek.values()) {
+                        long v = cs[c.index(r, cp, day)];
+                        if (v != 0) {
+                            add(r, p, day, v);
+                        }
+                    }
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Sets the count for date range r, paper and day. This is not atomic with
+     * respect to other threads adding to the same count.
+     *
+     * @param r The date range index.
+     * @param paper The paper.
+     * @param day The day.
+     * @param count The count.
+     */
+    void set(int r, String paper, DayOfWeek day, long count) {
+        int i = index(r, getPaperId(paper), day);
+        cells.set(i, count);
+        for (int s = 1; s < stripes; s++) {
+            cells.set(s * stride + i, 0);
+        }
+    }
+
+    /**
+     * @param r The date range index.
+     * @param paper The paper.
+     * @param day The day.
+     * @return The count for date range r, paper and day.
+     */
+    public long get(int r, String paper, DayOfWeek day) {
+        return get(index(r, getPaperId(paper), day));
+    }
+
+    /**
+     * @param r The date range index.
+     * @param paper The paper.
+     * @return The count for date range r and paper for all days.
+     */
+    public long get(int r, String paper) {
+        int i = index(r, getPaperId(paper), DayOfWeek.MONDAY);
+        long c = 0;
+        for (int d = 0; d < DAYS; d++) {
+            c += get(i + d);
+        }
+        return c;
+    }
+
+    private long get(int i) {
+        long c = 0;
+        for (int s = 0; s < stripes; s++) {
+            c += cells.get(s * stride + i);
+        }
+        return c;
+    }
+
+    /**
+     * Gets all the counts. This does not block threads adding to the counts,
+     * but the counts are not all read at the same instant, so additions made
+     * during the call may or may not be included.
+     *
+     * @return The counts with the count for date range r, paper id p and day
+     * d at index {@code (r * getPapers().size() + p) * 7 + d.ordinal()}.
+     */
+    public long[] snapshot() {
+        long[] r = new long[size];
+        for (int s = 0; s < stripes; s++) {
+            int o = s * stride;
+            for (int i = 0; i < size; i++) {
+                r[i] += cells.get(o + i);
+            }
+        }
+        return r;
+    }
+
+    private int getPaperId(String paper) {
+        Integer r = ids.get(paper);
+        if (r == null) {
+            throw new IllegalArgumentException("Unknown paper " + paper);
+        }
+        return r;
+    }
+}
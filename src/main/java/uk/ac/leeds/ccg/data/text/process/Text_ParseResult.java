@@ -0,0 +1,165 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.process;
+
+import java.time.DayOfWeek;
+import java.util.Collections;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import uk.ac.leeds.ccg.data.text.process.Text_Processor.DateHeadline;
+import uk.ac.leeds.ccg.data.text.term.Text_TermDayCounts;
+
+/**
+ * For holding the results of {@link Text_Processor#parseHTML} for one or more
+ * files. Instances are immutable: {@link #combine(Text_ParseResult)} returns a
+ * new instance, so results can be combined in any order including in a
+ * parallel reduction with {@link #Text_ParseResult(int)} as the identity.
+ */
+public class Text_ParseResult {
+
+    /**
+     * The number of words.
+     */
+    final int n;
+
+    /**
+     * Counts of the numbers of mentions of each word.
+     */
+    final int[] wordCounts;
+
+    /**
+     * Counts of the numbers of articles that mention each word.
+     */
+    final int[] articleCountsForWords;
+
+    /**
+     * Counts of the number of times each word appears by day of week.
+     */
+    final Text_TermDayCounts wordCountsByDay;
+
+    /**
+     * Counts of the number of articles each word appears in by day of week.
+     */
+    final Text_TermDayCounts articleCountsForWordsByDay;
+
+    /**
+     * The dates and headlines of Saturday articles that mention "syria".
+     */
+    final SortedSet<DateHeadline> headlines;
+
+    /**
+     * Create a new empty instance.
+     *
+     * @param n The number of words.
+     */
+    public Text_ParseResult(int n) {
+        this(new int[n], new int[n], new Text_TermDayCounts(n),
+                new Text_TermDayCounts(n), new TreeSet<>());
+    }
+
+    /**
+     * Create a new instance. The arguments are not copied and must not be
+     * modified after this is called.
+     *
+     * @param wordCounts What {@link #wordCounts} is set to.
+     * @param articleCountsForWords What {@link #articleCountsForWords} is set
+     * to.
+     * @param wordCountsByDay What {@link #wordCountsByDay} is set to.
+     * @param articleCountsForWordsByDay What
+     * {@link #articleCountsForWordsByDay} is set to.
+     * @param headlines What {@link #headlines} is a view of.
+     */
+    Text_ParseResult(int[] wordCounts, int[] articleCountsForWords,
+            Text_TermDayCounts wordCountsByDay,
+            Text_TermDayCounts articleCountsForWordsByDay,
+            TreeSet<DateHeadline> headlines) {
+        this.n = wordCounts.length;
+        this.wordCounts = wordCounts;
+        this.articleCountsForWords = articleCountsForWords;
+        this.wordCountsByDay = wordCountsByDay;
+        this.articleCountsForWordsByDay = articleCountsForWordsByDay;
+        this.headlines = Collections.unmodifiableSortedSet(headlines);
+    }
+
+    /**
+     * @param r The results to combine with this.
+     * @return A new instance with the counts of this and r summed and the
+     * headlines of both.
+     */
+    public Text_ParseResult combine(Text_ParseResult r) {
+        int[] wc = wordCounts.clone();
+        int[] acfw = articleCountsForWords.clone();
+        for (int i = 0; i < n; i++) {
+            wc[i] += r.wordCounts[i];
+            acfw[i] += r.articleCountsForWords[i];
+        }
+        TreeSet<DateHeadline> h = new TreeSet<>(headlines);
+        h.addAll(r.headlines);
+        return new Text_ParseResult(wc, acfw,
+                new Text_TermDayCounts(wordCountsByDay).add(r.wordCountsByDay),
+                new Text_TermDayCounts(articleCountsForWordsByDay)
+                        .add(r.articleCountsForWordsByDay), h);
+    }
+
+    /**
+     * @return The number of words.
+     */
+    public int getN() {
+        return n;
+    }
+
+    /**
+     * @param i The index of the word.
+     * @return The number of mentions of the word.
+     */
+    public int getWordCount(int i) {
+        return wordCounts[i];
+    }
+
+    /**
+     * @param i The index of the word.
+     * @return The number of articles that mention the word.
+     */
+    public int getArticleCountForWord(int i) {
+        return articleCountsForWords[i];
+    }
+
+    /**
+     * @param i The index of the word.
+     * @param day The day.
+     * @return The number of mentions of the word in articles on day.
+     */
+    public int getWordCount(int i, DayOfWeek day) {
+        return wordCountsByDay.get(i, day);
+    }
+
+    /**
+     * @param i The index of the word.
+     * @param day The day.
+     * @return The number of articles on day that mention the word.
+     */
+    public int getArticleCountForWord(int i, DayOfWeek day) {
+        return articleCountsForWordsByDay.get(i, day);
+    }
+
+    /**
+     * @return An unmodifiable view of the dates and headlines of Saturday
+     * articles that mention "syria".
+     */
+    public SortedSet<DateHeadline> getHeadlines() {
+        return headlines;
+    }
+}
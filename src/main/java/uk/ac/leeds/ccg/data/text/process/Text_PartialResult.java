@@ -0,0 +1,334 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.process;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import uk.ac.leeds.ccg.data.text.process.Text_Processor2.DateOutlineDetails;
+import uk.ac.leeds.ccg.data.text.term.Text_TermDayCounts;
+
+/**
+ * For holding the results of parsing one or more input files for each of a
+ * number of date ranges. Results for different files are combined using
+ * {@link #add(Text_PartialResult)}. Combining is deterministic: counts are
+ * summed and headlines are kept for each file by the index of the file, so
+ * results are the same however the files or the articles in them are split
+ * up and in whatever order the results are combined.
+ */
+public class Text_PartialResult {
+
+    /**
+     * The number of terms.
+     */
+    final int n;
+
+    /**
+     * The number of date ranges.
+     */
+    final int nr;
+
+    /**
+     * For each date range, counts of the numbers of mentions of each term.
+     */
+    final int[][] termCounts;
+
+    /**
+     * For each date range, counts of the numbers of articles that mention
+     * each term.
+     */
+    final int[][] articleCountsForTerms;
+
+    /**
+     * For each date range, counts of the number of times each term appears by
+     * day of week.
+     */
+    final Text_TermDayCounts[] termCountByDay;
+
+    /**
+     * For each date range, counts of the number of articles each term appears
+     * in by day of week.
+     */
+    final Text_TermDayCounts[] articleCountForTermByDay;
+
+    /**
+     * For each date range, the details of articles that mention the headline
+     * term keyed by the index of the file the articles are from.
+     */
+    final ArrayList<TreeMap<Integer, TreeSet<DateOutlineDetails>>> headlines;
+
+    /**
+     * For each date range, the number of articles in each paper by the day of
+     * week.
+     */
+    final Text_PaperDayCounts paperArticleCounts;
+
+    /**
+     * Create a new empty instance.
+     *
+     * @param papers The names of the newspapers.
+     * @param n The number of terms.
+     * @param nr The number of date ranges.
+     */
+    public Text_PartialResult(ArrayList<String> papers, int n, int nr) {
+        this.n = n;
+        this.nr = nr;
+        termCounts = new int[nr][n];
+        articleCountsForTerms = new int[nr][n];
+        termCountByDay = new Text_TermDayCounts[nr];
+        articleCountForTermByDay = new Text_TermDayCounts[nr];
+        headlines = new ArrayList<>();
+        paperArticleCounts = new Text_PaperDayCounts(papers, nr);
+        for (int r = 0; r < nr; r++) {
+            termCountByDay[r] = new Text_TermDayCounts(n);
+            articleCountForTermByDay[r] = new Text_TermDayCounts(n);
+            headlines.add(new TreeMap<>());
+        }
+    }
+
+    /**
+     * Adds the counts for an article in date range r.
+     *
+     * @param r The date range index.
+     * @param paper The paper.
+     * @param day The day of week of the article.
+     * @param articleTermCounts The term counts for the article.
+     */
+    void addArticle(int r, String paper, DayOfWeek day,
+            int[] articleTermCounts) {
+        paperArticleCounts.add(r, paper, day);
+        int[] tc = termCounts[r];
+        int[] acft = articleCountsForTerms[r];
+        Text_TermDayCounts tcbd = termCountByDay[r];
+        Text_TermDayCounts acftbd = articleCountForTermByDay[r];
+        for (int i = 0; i < n; i++) {
+            int c = articleTermCounts[i];
+            if (c > 0) {
+                tc[i] += c;
+                acft[i]++;
+                acftbd.add(i, day, 1);
+            }
+            tcbd.add(i, day, c);
+        }
+    }
+
+    /**
+     * Adds the results in r to this.
+     *
+     * @param r The results to add.
+     * @return this
+     */
+    public Text_PartialResult add(Text_PartialResult r) {
+        for (int x = 0; x < nr; x++) {
+            for (int i = 0; i < n; i++) {
+                termCounts[x][i] += r.termCounts[x][i];
+                articleCountsForTerms[x][i] += r.articleCountsForTerms[x][i];
+            }
+            termCountByDay[x].add(r.termCountByDay[x]);
+            articleCountForTermByDay[x].add(r.articleCountForTermByDay[x]);
+            Iterator<Integer> itef = r.headlines.get(x).keySet().iterator();
+            while (itef.hasNext()) {
+                Integer f = itef.next();
+                addHeadlines(x, f, r.headlines.get(x).get(f));
+            }
+        }
+        paperArticleCounts.add(r.paperArticleCounts);
+        return this;
+    }
+
+    /**
+     * Adds the headlines for a file in date range r.
+     *
+     * @param r The date range index.
+     * @param file The index of the file.
+     * @param dhs The headlines.
+     */
+    void addHeadlines(int r, int file, TreeSet<DateOutlineDetails> dhs) {
+        if (dhs.isEmpty()) {
+            return;
+        }
+        TreeSet<DateOutlineDetails> fdhs = headlines.get(r).get(file);
+        if (fdhs == null) {
+            headlines.get(r).put(file, new TreeSet<>(dhs));
+        } else {
+            fdhs.addAll(dhs);
+        }
+    }
+
+    /**
+     * @param r The date range index.
+     * @return The headlines in date range r in order for each file and then
+     * in the order of the files.
+     */
+    public ArrayList<DateOutlineDetails> getHeadlines(int r) {
+        ArrayList<DateOutlineDetails> result = new ArrayList<>();
+        Iterator<TreeSet<DateOutlineDetails>> ite
+                = headlines.get(r).values().iterator();
+        while (ite.hasNext()) {
+            result.addAll(ite.next());
+        }
+        return result;
+    }
+
+    /**
+     * Writes the results. The counts are written sparsely as the number of
+     * non-zero counts followed by the index and value of each. The headlines
+     * for each date range are written without the files they are for (see
+     * {@link #read(DataInputStream, List, int, int, int)}).
+     *
+     * @param dos The stream to write to.
+     * @param papers The names of the papers.
+     * @throws IOException If encountered.
+     */
+    void write(DataOutputStream dos, List<String> papers) throws IOException {
+        for (int r = 0; r < nr; r++) {
+            writeSparse(dos, termCounts[r]);
+            writeSparse(dos, articleCountsForTerms[r]);
+            writeSparse(dos, termCountByDay[r]);
+            writeSparse(dos, articleCountForTermByDay[r]);
+            ArrayList<DateOutlineDetails> dhs = getHeadlines(r);
+            dos.writeInt(dhs.size());
+            for (DateOutlineDetails dh : dhs) {
+                dos.writeLong(dh.LD.toEpochDay());
+                writeString(dos, dh.Section);
+                writeString(dos, dh.Length);
+                writeString(dos, dh.Headline);
+            }
+            for (String p : papers) {
+                dos.writeInt((int) paperArticleCounts.get(r, p));
+                for (DayOfWeek day : DayOfWeek.values()) {
+                    dos.writeInt((int) paperArticleCounts.get(r, p, day));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads results written by {@link #write(DataOutputStream, List)}.
+     *
+     * @param dis The stream to read from.
+     * @param papers The names of the papers.
+     * @param n The number of terms.
+     * @param nr The number of date ranges.
+     * @param file The index of the file to keep the headlines for.
+     * @return The results.
+     * @throws IOException If encountered.
+     */
+    static Text_PartialResult read(DataInputStream dis, List<String> papers,
+            int n, int nr, int file) throws IOException {
+        Text_PartialResult result = new Text_PartialResult(
+                new ArrayList<>(papers), n, nr);
+        for (int r = 0; r < nr; r++) {
+            readSparse(dis, result.termCounts[r]);
+            readSparse(dis, result.articleCountsForTerms[r]);
+            readSparse(dis, result.termCountByDay[r]);
+            readSparse(dis, result.articleCountForTermByDay[r]);
+            int nh = dis.readInt();
+            TreeSet<DateOutlineDetails> dhs = new TreeSet<>();
+            for (int h = 0; h < nh; h++) {
+                LocalDate ld = LocalDate.ofEpochDay(dis.readLong());
+                String section = readString(dis);
+                String length = readString(dis);
+                String headline = readString(dis);
+                dhs.add(new DateOutlineDetails(ld, section, length, headline));
+            }
+            result.addHeadlines(r, file, dhs);
+            for (String p : papers) {
+                /**
+                 * The total for p is the sum of the counts by day.
+                 */
+                dis.readInt();
+                for (DayOfWeek day : DayOfWeek.values()) {
+                    result.paperArticleCounts.set(r, p, day, dis.readInt());
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void writeSparse(DataOutputStream dos, int[] counts)
+            throws IOException {
+        int nz = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                nz++;
+            }
+        }
+        dos.writeInt(nz);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                dos.writeInt(i);
+                dos.writeInt(counts[i]);
+            }
+        }
+    }
+
+    private static void writeSparse(DataOutputStream dos,
+            Text_TermDayCounts counts) throws IOException {
+        DayOfWeek[] days = DayOfWeek.values();
+        int[] cs = new int[counts.getN() * days.length];
+        for (int i = 0; i < counts.getN(); i++) {
+            for (int d = 0; d < days.length; d++) {
+                cs[i * days.length + d] = counts.get(i, days[d]);
+            }
+        }
+        writeSparse(dos, cs);
+    }
+
+    private static void readSparse(DataInputStream dis, int[] counts)
+            throws IOException {
+        int nz = dis.readInt();
+        for (int j = 0; j < nz; j++) {
+            int i = dis.readInt();
+            counts[i] = dis.readInt();
+        }
+    }
+
+    private static void readSparse(DataInputStream dis,
+            Text_TermDayCounts counts) throws IOException {
+        DayOfWeek[] days = DayOfWeek.values();
+        int nz = dis.readInt();
+        for (int j = 0; j < nz; j++) {
+            int i = dis.readInt();
+            counts.add(i / days.length, days[i % days.length], dis.readInt());
+        }
+    }
+
+    /**
+     * Writes s, which may be null, as a flag followed by s if it is not null.
+     */
+    private static void writeString(DataOutputStream dos, String s)
+            throws IOException {
+        dos.writeBoolean(s != null);
+        if (s != null) {
+            dos.writeUTF(s);
+        }
+    }
+
+    private static String readString(DataInputStream dis) throws IOException {
+        if (dis.readBoolean()) {
+            return dis.readUTF();
+        }
+        return null;
+    }
+}
@@ -21,12 +21,13 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.Month;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.logging.Level;
@@ -34,6 +35,8 @@ import java.util.logging.Logger;
 import uk.ac.leeds.ccg.data.text.core.Text_Environment;
 import uk.ac.leeds.ccg.data.text.core.Text_Object;
 import uk.ac.leeds.ccg.data.text.io.Text_Files;
+import uk.ac.leeds.ccg.data.text.term.Text_TermDayCounts;
+import uk.ac.leeds.ccg.data.text.term.Text_TermMatcher;
 import uk.ac.leeds.ccg.generic.io.Generic_IO;
 
 /**
@@ -52,6 +55,45 @@ public class Text_Processor extends Text_Object {
      */
     Text_Files files;
 
+    /**
+     * If true then each HTML file is memory mapped and scanned at the level of
+     * bytes (see {@link #scanHTML(ArrayList, File)}) rather than read line by
+     * line as text. The results are the same either way.
+     */
+    boolean mapFiles = true;
+
+    /**
+     * For counting all the words in a line in a single pass. This is for
+     * matcherWords and is replaced if the words change.
+     */
+    Text_TermMatcher wordMatcher;
+
+    /**
+     * The words that wordMatcher is for.
+     */
+    ArrayList<String> matcherWords;
+
+    /**
+     * The start of each line that has the date of an article.
+     */
+    static final String DATE_MARKER = "<br><div class=\"c3\"><p class=\"c1\"><span class=\"c4\">";
+
+    /**
+     * What separates the month from the day of the month in a line that has
+     * the date of an article.
+     */
+    static final String DATE_SEPARATOR = "</span><span class=\"c2\"> ";
+
+    /**
+     * For parsing dates.
+     */
+    final Text_DateParser dateParser = new Text_DateParser();
+
+    /**
+     * The start of each line that has the title of an article.
+     */
+    static final String TITLE_MARKER = "<br><div class=\"c5\"><p class=\"c6\"><span class=\"c7\">";
+
     public Text_Processor(Text_Environment e) {
         super (e);
     }
@@ -107,10 +149,7 @@ public class Text_Processor extends Text_Object {
          */
         ArrayList<DayOfWeek> mondayToSaturday;
         mondayToSaturday = getMondayToSaturday();
-        int[] grandTotalWordCounts;
-        HashMap<String, TreeMap<DayOfWeek, Integer>> grandTotalWordCountOnDays;
-        int[] grandTotalArticleCountsForWords;
-        HashMap<String, TreeMap<DayOfWeek, Integer>> grandTotalArticleCountsForWordsOnDays;
+        Text_ParseResult grandTotal;
         int i;
         String word;
         Iterator<String> ite;
@@ -154,29 +193,14 @@ public class Text_Processor extends Text_Object {
             /**
              * Initialise results.
              */
-            grandTotalWordCounts = new int[words.size()];
-            grandTotalArticleCountsForWords = new int[words.size()];
-            grandTotalWordCountOnDays = new HashMap<>();
-            grandTotalArticleCountsForWordsOnDays = new HashMap<>();
-            i = 0;
-            ite = words.iterator();
-            while (ite.hasNext()) {
-                word = ite.next();
-                grandTotalWordCounts[i] = 0;
-                grandTotalArticleCountsForWords[i] = 0;
-                i++;
-                grandTotalWordCountOnDays.put(word, new TreeMap<>());
-                grandTotalArticleCountsForWordsOnDays.put(word, new TreeMap<>());
-            }
+            grandTotal = new Text_ParseResult(words.size());
             /**
              * Iterate through all the subdirectories in inputDir. It is known
              * that each subdirectory contains a set of HTML files and
              * associated directories. For the purposes of this processing, only
              * the HTML files are processed.
              */
-            int[] totalWordCounts;
-            int[] totalWordCountsInArticles;
-            Object[] results;
+            Text_ParseResult results;
             for (File input1 : inputs1) {
                 //System.out.println(input1);
                 /**
@@ -192,28 +216,11 @@ public class Text_Processor extends Text_Object {
                      * Combine the results from parsing this file to the overall
                      * results.
                      */
-                    // Process counts.
-                    totalWordCounts = (int[]) results[0];
-                    totalWordCountsInArticles = (int[]) results[1];
-                    i = 0;
-                    ite = words.iterator();
-                    while (ite.hasNext()) {
-                        word = ite.next();
-                        grandTotalWordCounts[i] += totalWordCounts[i];
-                        grandTotalArticleCountsForWords[i] += totalWordCountsInArticles[i];
-                        i++;
-                        addToCount(
-                                ((TreeMap<String, TreeMap<DayOfWeek, Integer>>) results[2]).get(word),
-                                grandTotalWordCountOnDays.get(word));
-                        addToCount(
-                                ((TreeMap<String, TreeMap<DayOfWeek, Integer>>) results[3]).get(word),
-                                grandTotalArticleCountsForWordsOnDays.get(word));
-
-                    }
+                    grandTotal = grandTotal.combine(results);
                     if (writeHeadlines) {
                         // Process dates and headlines writing out a list.
-                        TreeSet<DateHeadline> syriaDateHeadlines;
-                        syriaDateHeadlines = (TreeSet<DateHeadline>) results[4];
+                        SortedSet<DateHeadline> syriaDateHeadlines;
+                        syriaDateHeadlines = results.getHeadlines();
                         Iterator<DateHeadline> ite2;
                         DateHeadline dh;
                         ite2 = syriaDateHeadlines.iterator();
@@ -234,8 +241,6 @@ public class Text_Processor extends Text_Object {
             pwCounts.print("term, total word count, total article count, ");
 //                System.out.println(word + " word count on " + day + " " + i);
 //                pw.println(word + " word count on " + day + " " + i);
-            TreeMap<DayOfWeek, Integer> grandTotalWordCountOnDay;
-            TreeMap<DayOfWeek, Integer> grandTotalArticleCountsForWordsOnDay;
             Iterator<DayOfWeek> ite2;
             DayOfWeek day;
             ite2 = mondayToSaturday.iterator();
@@ -259,21 +264,19 @@ public class Text_Processor extends Text_Object {
             ite = words.iterator();
             while (ite.hasNext()) {
                 word = ite.next();
-                grandTotalWordCountOnDay = grandTotalWordCountOnDays.get(word);
-                grandTotalArticleCountsForWordsOnDay = grandTotalArticleCountsForWordsOnDays.get(word);
 //                System.out.println(word + " word count " + grandTotalWordCounts[i]);
 //                pwCounts.println(word + " word count " + grandTotalWordCounts[i]);
 //                System.out.println(word + " article count " + grandTotalArticleCountsForWords[i]);
 //                pwCounts.println(word + " article count " + grandTotalArticleCountsForWords[i]);
                 System.out.print(word);
                 pwCounts.print(word);
-                System.out.print(", " + grandTotalWordCounts[i]);
-                pwCounts.print(", " + grandTotalWordCounts[i]);
-                System.out.print(", " + grandTotalArticleCountsForWords[i]);
-                pwCounts.print(", " + grandTotalArticleCountsForWords[i]);
+                System.out.print(", " + grandTotal.getWordCount(i));
+                pwCounts.print(", " + grandTotal.getWordCount(i));
+                System.out.print(", " + grandTotal.getArticleCountForWord(i));
+                pwCounts.print(", " + grandTotal.getArticleCountForWord(i));
+                printWordCountOnDay(pwCounts, mondayToSaturday, i, grandTotal.wordCountsByDay);
+                printWordCountOnDay(pwCounts, mondayToSaturday, i, grandTotal.articleCountsForWordsByDay);
                 i++;
-                printWordCountOnDay(pwCounts, mondayToSaturday, word, grandTotalWordCountOnDays.get(word));
-                printWordCountOnDay(pwCounts, mondayToSaturday, word, grandTotalArticleCountsForWordsOnDays.get(word));
                 System.out.println();
                 pwCounts.println();
             }
@@ -288,22 +291,17 @@ public class Text_Processor extends Text_Object {
     void printWordCountOnDay(
             PrintWriter pw,
             ArrayList<DayOfWeek> mondayToSaturday,
-            String word,
-            TreeMap<DayOfWeek, Integer> grandTotalWordCountOnDay) {
+            int wordIndex,
+            Text_TermDayCounts grandTotalWordCountOnDays) {
         Iterator<DayOfWeek> ite;
         DayOfWeek day;
-        Integer i;
+        int i;
         ite = mondayToSaturday.iterator();
         while (ite.hasNext()) {
             day = ite.next();
-            i = grandTotalWordCountOnDay.get(day);
-            if (i == null) {
-                System.out.print(", 0");
-                pw.print(", 0");
-            } else {
-                System.out.print(", " + i);
-                pw.print(", " + i);
-            }
+            i = grandTotalWordCountOnDays.get(wordIndex, day);
+            System.out.print(", " + i);
+            pw.print(", " + i);
         }
     }
 
@@ -320,42 +318,37 @@ public class Text_Processor extends Text_Object {
     }
 
     /**
-     * This method parses the HTML file and returns results that are packed into
-     * an Object[] result of size 5: result[0] is an int[] of size 3 containing
-     * counts of the numbers of mentions of the terms "refugee", "syria" and
-     * "brexit" respectively. result[1] is TreeMap with keys that are the
-     * DayOfWeek and values that are counts of the number of times the word
-     * "refugee" appears on those days. result[2] is TreeMap with keys that are
-     * the DayOfWeek and values that are counts of the number of times the word
-     * "syria" appears on those days. result[3] is TreeMap with keys that are
-     * the DayOfWeek and values that are counts of the number of times the word
-     * "brexit" appears on those days. result[4] is a TreeSet of DateHeadlines
-     * which provides the dated and headlines of articles that have mention of
-     * "syria" in them.
+     * This method parses the HTML file and returns the counts of the numbers
+     * of mentions of each of the words, counts of the numbers of articles that
+     * mention each of the words, these counts by day of week, and the dates
+     * and headlines of articles that have mention of "syria" in them. Counts
+     * are indexed by the position of the word in words.
      *
      * @param words
      * @param input The input file to be parsed.
-     * @return
+     * @return The results for input.
      */
-    public Object[] parseHTML(ArrayList<String> words, File input) throws FileNotFoundException, IOException {
-        Object[] result = new Object[5];
+    public Text_ParseResult parseHTML(ArrayList<String> words, File input) throws FileNotFoundException, IOException {
+        if (mapFiles) {
+            return scanHTML(words, input);
+        }
+        int[] totalWordCounts;
+        int[] totalArticleCountsForWords;
         TreeSet<DateHeadline> syriaDateHeadlines;
         syriaDateHeadlines = new TreeSet<>();
-        TreeMap<String, TreeMap<DayOfWeek, Integer>> totalWordCountByDay;
-        TreeMap<String, TreeMap<DayOfWeek, Integer>> totalArticleCountForWordsByDay;
+        Text_TermDayCounts totalWordCountByDay;
+        Text_TermDayCounts totalArticleCountForWordsByDay;
         try (BufferedReader br = Generic_IO.getBufferedReader(input.toPath())) {
             String line = null;
             boolean read = false;
             int n;
             n = words.size();
-            int[] totalWordCounts = new int[n];
-            result[0] = totalWordCounts;
-            int[] totalArticleCountsForWords = new int[n];
-            result[1] = totalArticleCountsForWords;
+            totalWordCounts = new int[n];
+            totalArticleCountsForWords = new int[n];
             int[] wordCounts = new int[n];
             int[] articleCountsForWords = new int[n];
-            totalWordCountByDay = new TreeMap<>();
-            totalArticleCountForWordsByDay = new TreeMap<>();
+            totalWordCountByDay = new Text_TermDayCounts(n);
+            totalArticleCountForWordsByDay = new Text_TermDayCounts(n);
             int i;
             String word;
             Iterator<String> ite;
@@ -368,8 +361,6 @@ public class Text_Processor extends Text_Object {
                 wordCounts[i] = 0;
                 articleCountsForWords[i] = 0;
                 i++;
-                totalWordCountByDay.put(word, new TreeMap<>());
-                totalArticleCountForWordsByDay.put(word, new TreeMap<>());
             }   LocalDate date0 = null;
             boolean gotFirstDate = false;
             boolean gotTitle = false;
@@ -415,29 +406,22 @@ public class Text_Processor extends Text_Object {
                                     //System.out.println(title);
                                 }
                             }
-                            i = 0;
-                            ite = words.iterator();
-                            while (ite.hasNext()) {
-                                word = ite.next();
-                                // Add to word counts
-                                wordCounts[i] += getWordCount(word, line);
-                                i++;
+                            // Add to word counts
+                            int[] lineWordCounts = getWordCounts(words, line);
+                            for (i = 0; i < n; i++) {
+                                wordCounts[i] += lineWordCounts[i];
                             }
                         } else {
                             gotTitle = false;
                             day = date0.getDayOfWeek();
-                            i = 0;
-                            ite = words.iterator();
-                            while (ite.hasNext()) {
-                                word = ite.next();
+                            for (i = 0; i < n; i++) {
                                 // Add to word counts
                                 totalWordCounts[i] += wordCounts[i];
                                 if (wordCounts[i] > 0) {
                                     totalArticleCountsForWords[i]++;
-                                    addToCount(totalArticleCountForWordsByDay.get(word), day, 1);
+                                    totalArticleCountForWordsByDay.add(i, day, 1);
                                 }
-                                addToCount(totalWordCountByDay.get(word), day, wordCounts[i]);
-                                i++;
+                                totalWordCountByDay.add(i, day, wordCounts[i]);
                             }
                             /**
                              * Store DateHeadline's for those articles on Saturdays
@@ -457,10 +441,111 @@ public class Text_Processor extends Text_Object {
                 }
             }
         }
-        result[2] = totalWordCountByDay;
-        result[3] = totalArticleCountForWordsByDay;
-        result[4] = syriaDateHeadlines;
-        return result;
+        return new Text_ParseResult(totalWordCounts, totalArticleCountsForWords,
+                totalWordCountByDay, totalArticleCountForWordsByDay,
+                syriaDateHeadlines);
+    }
+
+    /**
+     * As {@link #parseHTML(ArrayList, File)} but with input memory mapped and
+     * scanned using a {@link Text_LineScanner}. Lines are tested for the date
+     * and title markers as bytes and are only decoded if they have a date or
+     * a title. Words are counted in lines that are all ASCII without the
+     * lines being decoded, in a single pass over a lower case view of each line. Other
+     * lines are counted as text (see {@link #getWordCounts(ArrayList,
+     * String)}).
+     *
+     * @param words
+     * @param input The input file to be parsed.
+     * @return The results for input.
+     * @throws IOException If encountered.
+     */
+    public Text_ParseResult scanHTML(ArrayList<String> words, File input)
+            throws IOException {
+        Text_LineScanner ls = new Text_LineScanner(input.toPath());
+        byte[] dateMarker = DATE_MARKER.getBytes(StandardCharsets.UTF_8);
+        byte[] titleMarker = TITLE_MARKER.getBytes(StandardCharsets.UTF_8);
+        int n = words.size();
+        Text_TermMatcher matcher = getWordMatcher(words);
+        int syria = words.indexOf("syria");
+        int[] totalWordCounts = new int[n];
+        int[] totalArticleCountsForWords = new int[n];
+        int[] wordCounts = new int[n];
+        Text_TermDayCounts totalWordCountByDay = new Text_TermDayCounts(n);
+        Text_TermDayCounts totalArticleCountForWordsByDay
+                = new Text_TermDayCounts(n);
+        TreeSet<DateHeadline> syriaDateHeadlines = new TreeSet<>();
+        LocalDate date0 = null;
+        boolean gotTitle = false;
+        String title = null;
+        while (ls.next()) {
+            LocalDate date = null;
+            if (ls.startsWith(dateMarker)) {
+                date = dateParser.parse(ls.getASCII(), dateMarker.length,
+                        DATE_SEPARATOR, true);
+                if (date == null) {
+                    date = parseDate(ls.getLine());
+                }
+            }
+            if (date0 == null) {
+                // Get to the first article and store the date in date0.
+                date0 = date;
+            } else if (date == null) {
+                /**
+                 * Parse the next article by first getting the title.
+                 */
+                if (!gotTitle) {
+                    title = ls.startsWith(titleMarker)
+                            ? parseTitle(ls.getLine()) : "";
+                    if (!title.isEmpty()) {
+                        gotTitle = true;
+                    }
+                }
+                int[] lineWordCounts;
+                if (ls.isASCII()) {
+                    lineWordCounts = matcher.getTermCounts(
+                            ls.getLowerCaseASCII());
+                    for (int i = 0; i < n; i++) {
+                        if (!isLiteral(words.get(i))) {
+                            lineWordCounts[i] = getWordCount(words.get(i),
+                                    ls.getLine());
+                        }
+                    }
+                } else {
+                    lineWordCounts = getWordCounts(words, ls.getLine());
+                }
+                for (int i = 0; i < n; i++) {
+                    wordCounts[i] += lineWordCounts[i];
+                }
+            } else {
+                gotTitle = false;
+                DayOfWeek day = date0.getDayOfWeek();
+                for (int i = 0; i < n; i++) {
+                    totalWordCounts[i] += wordCounts[i];
+                    if (wordCounts[i] > 0) {
+                        totalArticleCountsForWords[i]++;
+                        totalArticleCountForWordsByDay.add(i, day, 1);
+                    }
+                    totalWordCountByDay.add(i, day, wordCounts[i]);
+                }
+                /**
+                 * Store DateHeadline's for those articles on Saturdays that
+                 * contain the word "syria".
+                 */
+                if (wordCounts[syria] > 0) {
+                    if (date.getDayOfWeek().equals(DayOfWeek.SATURDAY)) {
+                        syriaDateHeadlines.add(new DateHeadline(date, title));
+                    }
+                }
+                for (int i = 0; i < n; i++) {
+                    wordCounts[i] = 0;
+                }
+                date0 = date;
+            }
+        }
+        return new Text_ParseResult(totalWordCounts, totalArticleCountsForWords,
+                totalWordCountByDay, totalArticleCountForWordsByDay,
+                syriaDateHeadlines);
     }
 
     public void addToCount(
@@ -510,6 +595,57 @@ public class Text_Processor extends Text_Object {
         return result;
     }
 
+    /**
+     * Counts all the words in line in a single pass. This gives the same
+     * counts as {@link #getWordCount(String, String)} for each word, but line
+     * is only changed to lower case once and the words are counted using
+     * wordMatcher rather than by regular expression. Any word that is not
+     * literal as a regular expression is counted using getWordCount.
+     *
+     * @param words The words.
+     * @param line The line.
+     * @return The count for each word in words.
+     */
+    int[] getWordCounts(ArrayList<String> words, String line) {
+        int[] result = getWordMatcher(words).getTermCounts(line.toLowerCase());
+        for (int i = 0; i < result.length; i++) {
+            if (!isLiteral(words.get(i))) {
+                result[i] = getWordCount(words.get(i), line);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param words The words.
+     * @return A matcher for words which is only built if words have changed.
+     */
+    Text_TermMatcher getWordMatcher(ArrayList<String> words) {
+        if (wordMatcher == null || !words.equals(matcherWords)) {
+            matcherWords = new ArrayList<>(words);
+            wordMatcher = new Text_TermMatcher(
+                    words.toArray(new String[words.size()]));
+        }
+        return wordMatcher;
+    }
+
+    /**
+     * @param word The word.
+     * @return true if word is not empty and has no characters that are
+     * special in a regular expression.
+     */
+    static boolean isLiteral(String word) {
+        if (word.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if ("\\^$.|?*+()[]{}".indexOf(word.charAt(i)) != -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * For parsing a line. If it is thought to be a title as it contains some
      * key text that it is assumed all titles have, then the title is returned
@@ -520,7 +656,7 @@ public class Text_Processor extends Text_Object {
      */
     String parseTitle(String line) {
         String result = "";
-        if (line.startsWith("<br><div class=\"c5\"><p class=\"c6\"><span class=\"c7\">")) {
+        if (line.startsWith(TITLE_MARKER)) {
             String s;
             s = line.replace("<br><div class=\"c5\"><p class=\"c6\"><span class=\"c7\">", "");
             s = s.replace("</span><span class=\"c10\">refugees</span><span class=\"c7\"></span><span class=\"c10\">refugees</span><span class=\"c7\">", "refugees");
@@ -541,14 +677,21 @@ public class Text_Processor extends Text_Object {
     /**
      * For parsing a line. If it is thought to be a date as it contains some key
      * text that it is assumed all dates have, then the date is returned
-     * otherwise an empty String is returned.
+     * otherwise an empty String is returned. Dates in the expected format are
+     * parsed by dateParser without creating any strings, and other dates are
+     * parsed by splitting the line.
      *
      * @param line
      * @return
      */
     LocalDate parseDate(String line) {
         LocalDate result = null;
-        if (line.startsWith("<br><div class=\"c3\"><p class=\"c1\"><span class=\"c4\">")) {
+        if (line.startsWith(DATE_MARKER)) {
+            result = dateParser.parse(line, DATE_MARKER.length(),
+                    DATE_SEPARATOR, true);
+            if (result != null) {
+                return result;
+            }
             String month;
             String dayOfMonth;
             String year;
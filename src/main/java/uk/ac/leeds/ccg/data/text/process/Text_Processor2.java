@@ -20,30 +20,41 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.Month;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Attribute;
-import org.jsoup.nodes.Attributes;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.nodes.Node;
-import org.jsoup.select.Elements;
+import java.util.zip.ZipFile;
 import uk.ac.leeds.ccg.generic.time.Generic_LocalDateRange;
 import uk.ac.leeds.ccg.data.text.core.Text_Environment;
 import uk.ac.leeds.ccg.data.text.core.Text_Object;
+import uk.ac.leeds.ccg.data.text.core.Text_Strings;
+import uk.ac.leeds.ccg.data.text.io.Text_Corpus;
 import uk.ac.leeds.ccg.data.text.io.Text_Files;
+import uk.ac.leeds.ccg.data.text.io.Text_ReadAhead;
+import uk.ac.leeds.ccg.data.text.io.Text_Source;
+import uk.ac.leeds.ccg.data.text.io.Text_ZipEntrySource;
+import uk.ac.leeds.ccg.data.text.term.Text_TermDayCounts;
+import uk.ac.leeds.ccg.data.text.term.Text_TermQuery;
+import uk.ac.leeds.ccg.data.text.term.Text_TermSet;
 import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
 import uk.ac.leeds.ccg.generic.io.Generic_IO;
 import uk.ac.leeds.ccg.generic.lang.Generic_String;
@@ -75,6 +86,9 @@ public class Text_Processor2 extends Text_Object {
 
     public Text_Processor2(Text_Environment e) {
         super(e);
+        addPaper(new Text_Paper(sTheGuardian, "GMT", true));
+        addPaper(new Text_Paper(sDailyMail, "day", false));
+        addPaper(new Text_Paper(sMailOnSunday, "day", false));
     }
 
     public static void main(String[] args) {
@@ -96,14 +110,153 @@ public class Text_Processor2 extends Text_Object {
     ArrayList<String> papers;
 
     /**
-     * For counting the number of articles in a paper.
+     * For looking up how the articles of a paper are laid out keyed by the
+     * lower case name of the paper. Papers that are not in this are laid out
+     * as described by {@link Text_Paper#Text_Paper(String)}.
      */
-    HashMap<String, Integer> paperArticleCounts;
+    final HashMap<String, Text_Paper> paperLayouts = new HashMap<>();
 
     /**
-     * For counting the number of articles in a paper by the day of week.
+     * For parsing dates. This is used by the threads that parse files in
+     * parallel.
      */
-    HashMap<String, TreeMap<DayOfWeek, Integer>> paperArticleCountsByDayOfWeek;
+    final Text_DateParser dateParser = new Text_DateParser();
+
+    /**
+     * The number of threads used to parse files in parallel.
+     */
+    int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The number of threads used to count terms in the articles extracted
+     * from files (see {@link Text_ArticlePipeline}).
+     */
+    int matcherThreads = parallelism;
+
+    /**
+     * The maximum number of articles extracted from files and waiting to have
+     * terms counted in them.
+     */
+    int articleQueueSize = 1024;
+
+    /**
+     * The maximum number of HTML files that are read into memory ahead of
+     * being parsed (see {@link Text_ReadAhead}). If this is 0, files are not
+     * read ahead.
+     */
+    int readAheadFiles = 2 * parallelism;
+
+    /**
+     * The number of threads used to read HTML files ahead of being parsed.
+     */
+    int readAheadThreads = 4;
+
+    /**
+     * If true and the Java runtime supports virtual threads, then each HTML
+     * file that is read ahead is read in its own virtual thread, with up to
+     * maxConcurrentReads files being read at once and at least that many
+     * read ahead. This is for storage with high latency, such as network file
+     * systems, where many reads need to be in progress to keep the threads
+     * that parse and count busy. (If false or virtual threads are not
+     * supported, files are read ahead using readAheadThreads threads.)
+     */
+    boolean virtualThreads = false;
+
+    /**
+     * The maximum number of HTML files being read at once when using virtual
+     * threads.
+     */
+    int maxConcurrentReads = 128;
+
+    /**
+     * When not streaming, HTML files of at least this many bytes are split
+     * at article boundaries into parts that are parsed in parallel (see
+     * splitArticles). If not positive then files are not split. Files are
+     * never split when streaming, so that only about one article of a file
+     * is held in memory at a time (see streaming).
+     */
+    long splitBytes = 1 << 20;
+
+    /**
+     * The number of articles in each part of a split HTML file.
+     */
+    int splitArticles = 50;
+
+    /**
+     * If true then HTML files are parsed in a streaming mode that holds only
+     * a small part of each file in memory at a time. If false then each HTML
+     * file is parsed into a jsoup Document. (See
+     * {@link Text_ArticleParser#extract(Text_Source, boolean, Consumer)}.)
+     */
+    boolean streaming = true;
+
+    /**
+     * If true then the articles extracted from each HTML file are stored in
+     * a {@link Text_ArticleStore} in articleStoreDir and later runs read the
+     * articles from there rather than parsing the HTML again. A store is
+     * only used if it was modified after the HTML file and was written for
+     * the same papers. As a store has all the articles, when a store is
+     * written every article is extracted in full, including those in none of
+     * the date ranges, so articles are only skipped once their date is known
+     * (see {@link Text_ArticleParser#extract(Text_Source,
+     * java.util.function.Predicate, Consumer)}) if storeArticles and
+     * indexArticles are both false.
+     */
+    boolean storeArticles = true;
+
+    /**
+     * The directory for article stores.
+     */
+    Path articleStoreDir;
+
+    /**
+     * If true then the results for each HTML file are cached in a
+     * {@link Text_ResultCache} for each directory of HTML files in
+     * resultCacheDir and later runs for the same terms, date ranges, papers
+     * and headline term only count the files that are new or have changed.
+     */
+    boolean cacheResults = true;
+
+    /**
+     * The directory for result caches.
+     */
+    Path resultCacheDir;
+
+    /**
+     * If true then a {@link Text_IndexSegments} is kept for each directory of
+     * HTML files in articleIndexDir and counts are produced from the segments
+     * that overlap the date ranges rather than by going through the articles
+     * again. Only files that are new since the segments were written are
+     * parsed, and these are added as new segments. Segments are only used if
+     * the papers are the same as when they were written and if the terms can
+     * be counted using them. As segments are for all dates, the files that
+     * are parsed have every article extracted in full, including those in
+     * none of the date ranges (see storeArticles).
+     */
+    boolean indexArticles = true;
+
+    /**
+     * The directory for article index segments.
+     */
+    Path articleIndexDir;
+
+    /**
+     * For each directory of HTML files, the merge of small index segments
+     * which is done in the background while other directories are processed
+     * keyed by the name of the directory.
+     */
+    HashMap<String, Future<?>> merges = new HashMap<>();
+
+    /**
+     * If true then, whenever the terms are counted using an index segment, a
+     * {@link Text_TermBitmaps} of the articles that contain each term is
+     * written next to the segment unless there is a current one. These are
+     * for use elsewhere (see {@link Text_TermBitmaps#open(Path, Text_TermSet,
+     * Path)}) as nothing here reads them, so this is false by default. They
+     * are not written for files that are parsed rather than counted using an
+     * index segment, such as the files that are new since the last run.
+     */
+    boolean bitmapTerms = false;
 
     String sTheExpress = "The Express";
     String sTheGuardian = "The Guardian";
@@ -115,6 +268,25 @@ public class Text_Processor2 extends Text_Object {
     String sMEN = "Manchester Evening News";
     String sTheEveningStandard = "The Evening Standard (London)";
 
+    /**
+     * Adds or replaces how the articles of a paper are laid out. The name of
+     * the paper is matched ignoring case.
+     *
+     * @param paper The paper.
+     */
+    public void addPaper(Text_Paper paper) {
+        paperLayouts.put(paper.name.toLowerCase(Locale.ROOT), paper);
+    }
+
+    /**
+     * @param name The name of a paper.
+     * @return How the articles of the paper called name are laid out.
+     */
+    public Text_Paper getPaper(String name) {
+        Text_Paper r = paperLayouts.get(name.toLowerCase(Locale.ROOT));
+        return r == null ? new Text_Paper(name) : r;
+    }
+
     /**
      * If true then a file with headlines for articles containing the term
      * headlineTerm are written out to file.
@@ -182,8 +354,7 @@ public class Text_Processor2 extends Text_Object {
         }
 
         /**
-         * Initialise papers, paperArticleCounts and
-         * paperArticleCountsByDayOfWeek.
+         * Initialise papers.
          */
         papers = new ArrayList<>();
         switch (runID) {
@@ -204,8 +375,6 @@ public class Text_Processor2 extends Text_Object {
                 papers.add(sTheEveningStandard);
                 break;
         }
-        paperArticleCounts = new HashMap<>();
-        paperArticleCountsByDayOfWeek = new HashMap<>();
 
         /**
          * Get terms and declare key variables.
@@ -226,7 +395,11 @@ public class Text_Processor2 extends Text_Object {
         allterms = (TreeMap<Integer, ArrayList<String>>) allTerms[0];
         HashMap<Integer, String> termTypes;
         termTypes = (HashMap<Integer, String>) allTerms[1];
-        int numberOfTerms = (Integer) allTerms[2];
+        /**
+         * Compile the terms once for the run so that all terms can be counted
+         * in a single pass through the text of each article.
+         */
+        Text_TermSet termSet = new Text_TermSet(allterms, termTypes);
 
         /**
          * Initialise directories
@@ -247,6 +420,12 @@ public class Text_Processor2 extends Text_Object {
         }
         Path inputDir = Paths.get(files.getInDir().toString(), dirname, "LexisNexis");
         System.out.println(inputDir);
+        articleStoreDir = Paths.get(files.getOutDir().toString(), dirname,
+                Text_Strings.s_Articles);
+        articleIndexDir = Paths.get(files.getOutDir().toString(), dirname,
+                Text_Strings.s_Index);
+        resultCacheDir = Paths.get(files.getOutDir().toString(), dirname,
+                Text_Strings.s_Results);
 
         // Get GuardianAPIKey
         GuardianAPIKey = getGuardianAPIKey();
@@ -256,988 +435,495 @@ public class Text_Processor2 extends Text_Object {
          */
         ArrayList<DayOfWeek> mondayToSaturday;
         mondayToSaturday = getMondayToSaturday();
-        int[] grandTotalTermCounts;
-        HashMap<String, TreeMap<DayOfWeek, Integer>> grandTotalTermCountOnDays;
-        int[] grandTotalArticleCountsForTerms;
-        HashMap<String, TreeMap<DayOfWeek, Integer>> grandTotalArticleCountsForTermsOnDays;
-        String term;
+        int nr = dates.size();
         String name;
         File outFile;
         PrintWriter pwCounts;
-        PrintWriter pwHeadlines = null;
-        File[] inputs0;
-        File[] inputs1;
-        inputs0 = inputDir.toFile().listFiles();
+        PrintWriter pwHeadlines;
+        /**
+         * Get the HTML files in each subdirectory of inputDir. It is known
+         * that inputDir contains only directories and no files and that each
+         * subdirectory contains a set of HTML files and associated
+         * directories. For the purposes of this processing, only the HTML
+         * files are processed. If inputDir does not exist then the HTML files
+         * are read directly from the zip archives of the download in the
+         * input directory, which have names starting with dirname, without
+         * them being unpacked.
+         */
+        LinkedHashMap<String, ArrayList<Text_Source>> inputs;
+        List<ZipFile> zips = new ArrayList<>();
+        if (Files.isDirectory(inputDir)) {
+            inputs = Text_Corpus.getFiles(inputDir, "*{htm,HTML}");
+        } else {
+            zips = Text_ZipEntrySource.open(files.getInDir(), dirname);
+            inputs = Text_ZipEntrySource.getFiles(zips, "htm", "HTML");
+        }
         Iterator<String> papersIte;
         String p;
+        int r;
 
         /**
-         * Process the data for each start and end time period going through
-         * each input file.
+         * Get the output directory for each start and end time period.
          */
-        Iterator<Generic_LocalDateRange> iteDR;
-        iteDR = dates.iterator();
-        while (iteDR.hasNext()) {
-            Generic_LocalDateRange dateRange;
-            dateRange = iteDR.next();
-            LocalDate start;
-            LocalDate end;
-            start = dateRange.getStart();
-            end = dateRange.getEnd();
-            File outDir = new File(files.getOutDir().toFile(),
-                    dirname + "/LexisNexis" + start.toString()
-                    + "_" + end.toString());
-            if (!outDir.exists()) {
-                outDir.mkdirs();
+        File[] outDirs = new File[nr];
+        for (r = 0; r < nr; r++) {
+            Generic_LocalDateRange dateRange = dates.get(r);
+            outDirs[r] = new File(files.getOutDir().toFile(),
+                    dirname + "/LexisNexis" + dateRange.getStart().toString()
+                    + "_" + dateRange.getEnd().toString());
+            if (!outDirs[r].exists()) {
+                outDirs[r].mkdirs();
             }
+        }
+
+        /**
+         * For parsing files in parallel.
+         */
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
 
+        /**
+         * Iterate through all the directories of HTML files. Each input file
+         * is parsed once and the results for each article are added to the
+         * results for each time period that contains it.
+         */
+        for (Map.Entry<String, ArrayList<Text_Source>> input : inputs.entrySet()) {
+            name = input.getKey();
             /**
-             * Iterate through all the directories in inputDir. It is known that
-             * inputDir contains only directories and no files.
+             * Print out the name of the directory/File.
              */
-            for (File input0 : inputs0) {
-                // Reset paperArticleCounts
-                papersIte = papers.iterator();
-                while (papersIte.hasNext()) {
-                    p = papersIte.next();
-                    paperArticleCounts.put(p, 0);
-                    TreeMap<DayOfWeek, Integer> articleCountsByDayOfWeek;
-                    articleCountsByDayOfWeek = new TreeMap<>();
-                    articleCountsByDayOfWeek.put(DayOfWeek.MONDAY, 0);
-                    articleCountsByDayOfWeek.put(DayOfWeek.TUESDAY, 0);
-                    articleCountsByDayOfWeek.put(DayOfWeek.WEDNESDAY, 0);
-                    articleCountsByDayOfWeek.put(DayOfWeek.THURSDAY, 0);
-                    articleCountsByDayOfWeek.put(DayOfWeek.FRIDAY, 0);
-                    articleCountsByDayOfWeek.put(DayOfWeek.SATURDAY, 0);
-                    articleCountsByDayOfWeek.put(DayOfWeek.SUNDAY, 0);
-                    paperArticleCountsByDayOfWeek.put(p, articleCountsByDayOfWeek);
-                }
-
-                name = input0.getName();
-                outFile = new File(outDir, name + "Counts.csv");
-                pwCounts = Generic_IO.getPrintWriter(outFile.toPath(), false);
+            //System.out.println(input0);
+            System.out.println("---------------------------");
+            System.out.println(name);
+            //pw.println(name);
+            System.out.println("---------------------------");
+            ArrayList<Text_Source> htmlFiles = input.getValue();
+            Text_PartialResult result;
+            try {
+                result = count(pool, termSet, dates, name, htmlFiles);
+            } catch (IOException ex) {
+                pool.shutdown();
+                Text_ZipEntrySource.close(zips);
+                throw ex;
+            }
+            /**
+             * Write out summaries of counts for each time period.
+             */
+            for (r = 0; r < nr; r++) {
                 if (writeHeadlines) {
-                    outFile = new File(outDir,
+                    outFile = new File(outDirs[r],
                             name + "HeadlinesForArticlesContaining_" + headlineTerm + ".csv");
                     pwHeadlines = Generic_IO.getPrintWriter(outFile.toPath(), false);
                     pwHeadlines.println("Date, Section, Length, Title");
-                }
-                /**
-                 * Print out the name of the directory/File.
-                 */
-                //System.out.println(input0);
-                System.out.println("---------------------------");
-                System.out.println(name);
-                //pw.println(name);
-                System.out.println("---------------------------");
-                /**
-                 * Iterate through all the files in the directory.
-                 */
-                inputs1 = input0.listFiles();
-
-                /**
-                 * Initialise results.
-                 */
-                grandTotalTermCounts = new int[numberOfTerms];
-                grandTotalArticleCountsForTerms = new int[numberOfTerms];
-                grandTotalTermCountOnDays = new HashMap<>();
-                grandTotalArticleCountsForTermsOnDays = new HashMap<>();
-                int i = 0;
-                Iterator<Integer> ite;
-                ArrayList<String> terms;
-                Iterator<String> ite2;
-                ite = allterms.keySet().iterator();
-                while (ite.hasNext()) {
-                    terms = allterms.get(ite.next());
-                    ite2 = terms.iterator();
-                    while (ite2.hasNext()) {
-                        term = ite2.next();
-                        grandTotalTermCounts[i] = 0;
-                        grandTotalArticleCountsForTerms[i] = 0;
-                        i++;
-                        grandTotalTermCountOnDays.put(term, new TreeMap<>());
-                        grandTotalArticleCountsForTermsOnDays.put(term, new TreeMap<>());
-                    }
-                }
-                /**
-                 * Iterate through all the subdirectories in inputDir. It is
-                 * known that each subdirectory contains a set of HTML files and
-                 * associated directories. For the purposes of this processing,
-                 * only the HTML files are processed.
-                 */
-                int[] totalTermCounts;
-                int[] totalTermCountsInArticles;
-                Object[] results;
-                for (File input1 : inputs1) {
-                    //System.out.println(input1);
-                    /**
-                     * Filter to only process the HTML files.
-                     */
-                    if (input1.getName().endsWith("htm")
-                            || input1.getName().endsWith("HTML")) {
-                        /**
-                         * Parse the HTML file and obtain part of the result.
-                         */
-                        results = parseHTML(numberOfTerms, start, end, allterms,
-                                input1);
-                        /**
-                         * Combine the results from parsing this file to the
-                         * overall results.
-                         */
-                        // Process counts.
-                        totalTermCounts = (int[]) results[0];
-                        totalTermCountsInArticles = (int[]) results[1];
-                        i = 0;
-                        ite = allterms.keySet().iterator();
-                        while (ite.hasNext()) {
-                            terms = allterms.get(ite.next());
-                            ite2 = terms.iterator();
-                            while (ite2.hasNext()) {
-                                term = ite2.next();
-                                grandTotalTermCounts[i] += totalTermCounts[i];
-                                grandTotalArticleCountsForTerms[i] += totalTermCountsInArticles[i];
-                                i++;
-                                addToCount(
-                                        ((TreeMap<String, TreeMap<DayOfWeek, Integer>>) results[2]).get(term),
-                                        grandTotalTermCountOnDays.get(term));
-                                addToCount(
-                                        ((TreeMap<String, TreeMap<DayOfWeek, Integer>>) results[3]).get(term),
-                                        grandTotalArticleCountsForTermsOnDays.get(term));
-                            }
-                        }
-                        if (writeHeadlines) {
-                            // Process dates and headlines writing out a list.
-                            TreeSet<DateOutlineDetails> headlineTermDateHeadlines;
-                            headlineTermDateHeadlines = (TreeSet<DateOutlineDetails>) results[4];
-                            Iterator<DateOutlineDetails> ite3;
-                            DateOutlineDetails dh;
-                            ite3 = headlineTermDateHeadlines.iterator();
-                            while (ite3.hasNext()) {
-                                dh = ite3.next();
-                                String s;
-                                s = dh.LD + ",\"" + dh.Section + "\",\"" + dh.Length + "\",\"" + dh.Headline + "\"";
-                                System.out.println(s);
-                                pwHeadlines.println(s);
-                            }
-                        }
-                        //}
-                    }
-                }
-                /**
-                 * Write out summaries of counts.
-                 */
-                /**
-                 * Write header
-                 */
-                String header;
-                header = "Term Type,Term,Total Term Count,Total Article Count";
-                TreeMap<DayOfWeek, Integer> grandTotalTermCountOnDay;
-                TreeMap<DayOfWeek, Integer> grandTotalArticleCountsForTermsOnDay;
-                Iterator<DayOfWeek> ite3;
-                DayOfWeek day;
-                ite3 = mondayToSaturday.iterator();
-                while (ite3.hasNext()) {
-                    day = ite3.next();
-                    header += ",Term Count On " + day;
-                }
-                ite3 = mondayToSaturday.iterator();
-                while (ite3.hasNext()) {
-                    day = ite3.next();
-                    header += ",Article Count On " + day;
-                }
-                System.out.println(header);
-                pwCounts.println(header);
-                /**
-                 * Write lines
-                 */
-                i = 0;
-                ite = allterms.keySet().iterator();
-                while (ite.hasNext()) {
-                    int typeInt = ite.next();
-                    String termType = termTypes.get(typeInt);
-                    terms = allterms.get(typeInt);
-                    ite2 = terms.iterator();
-                    while (ite2.hasNext()) {
-                        term = ite2.next();
-                        grandTotalTermCountOnDay = grandTotalTermCountOnDays.get(term);
-                        grandTotalArticleCountsForTermsOnDay = grandTotalArticleCountsForTermsOnDays.get(term);
-//                System.out.println(term + " term count " + grandTotalTermCounts[i]);
-//                pwCounts.println(term + " term count " + grandTotalTermCounts[i]);
-//                System.out.println(term + " Article count " + grandTotalArticleCountsForTerms[i]);
-//                pwCounts.println(term + " Article count " + grandTotalArticleCountsForTerms[i]);
-                        System.out.print(termType);
-                        pwCounts.print(termType);
-                        System.out.print("," + term);
-                        pwCounts.print("," + term);
-                        System.out.print("," + grandTotalTermCounts[i]);
-                        pwCounts.print("," + grandTotalTermCounts[i]);
-                        System.out.print("," + grandTotalArticleCountsForTerms[i]);
-                        pwCounts.print("," + grandTotalArticleCountsForTerms[i]);
-                        i++;
-                        printTermCountOnDay(pwCounts, mondayToSaturday, term,
-                                grandTotalTermCountOnDays.get(term));
-                        printTermCountOnDay(pwCounts, mondayToSaturday, term,
-                                grandTotalArticleCountsForTermsOnDays.get(term));
-                        System.out.println();
-                        pwCounts.println();
+                    // Process dates and headlines writing out a list.
+                    Iterator<DateOutlineDetails> ite3;
+                    DateOutlineDetails dh;
+                    ite3 = result.getHeadlines(r).iterator();
+                    while (ite3.hasNext()) {
+                        dh = ite3.next();
+                        String s;
+                        s = dh.LD + ",\"" + dh.Section + "\",\"" + dh.Length + "\",\"" + dh.Headline + "\"";
+                        System.out.println(s);
+                        pwHeadlines.println(s);
                     }
+                    pwHeadlines.close();
                 }
+                outFile = new File(outDirs[r], name + "Counts.csv");
+                pwCounts = Generic_IO.getPrintWriter(outFile.toPath(), false);
+                writeCounts(pwCounts, mondayToSaturday, termSet,
+                        result.termCounts[r],
+                        result.articleCountsForTerms[r],
+                        result.termCountByDay[r],
+                        result.articleCountForTermByDay[r]);
                 System.out.println("---------------------------");
                 pwCounts.close();
-                if (writeHeadlines) {
-                    pwHeadlines.close();
-                }
                 papersIte = papers.iterator();
                 while (papersIte.hasNext()) {
                     p = papersIte.next();
-                    int c = paperArticleCounts.get(p);
+                    long c = result.paperArticleCounts.get(r, p);
                     System.out.println(p + " ArticleCount " + c);
                     if (c > 0) {
-                        TreeMap<DayOfWeek, Integer> DoWArticleCounts;
-                        DoWArticleCounts = paperArticleCountsByDayOfWeek.get(p);
-                        Iterator<DayOfWeek> DoWIte;
-                        DoWIte = DoWArticleCounts.keySet().iterator();
-                        DayOfWeek DoW;
-                        while (DoWIte.hasNext()) {
-                            DoW = DoWIte.next();
+                        for (DayOfWeek DoW : DayOfWeek.values()) {
                             System.out.println(p + " ArticleCount on "
                                     + DoW.toString() + " "
-                                    + DoWArticleCounts.get(DoW));
+                                    + result.paperArticleCounts.get(r, p, DoW));
                         }
                     }
                 }
             }
         }
-    }
-
-    void printTermCountOnDay(PrintWriter pw,
-            ArrayList<DayOfWeek> mondayToSaturday, String term,
-            TreeMap<DayOfWeek, Integer> grandTotalTermCountOnDay) {
-        Iterator<DayOfWeek> ite;
-        DayOfWeek day;
-        Integer i;
-        ite = mondayToSaturday.iterator();
-        while (ite.hasNext()) {
-            day = ite.next();
-            i = grandTotalTermCountOnDay.get(day);
-            if (i == null) {
-                System.out.print(",0");
-                pw.print(",0");
-            } else {
-                System.out.print("," + i);
-                pw.print("," + i);
+        try {
+            for (String n : new ArrayList<>(merges.keySet())) {
+                waitForMerge(n);
             }
+        } finally {
+            pool.shutdown();
+            Text_ZipEntrySource.close(zips);
         }
     }
 
-    ArrayList<DayOfWeek> getMondayToSaturday() {
-        ArrayList<DayOfWeek> result;
-        result = new ArrayList<>();
-        result.add(DayOfWeek.MONDAY);
-        result.add(DayOfWeek.TUESDAY);
-        result.add(DayOfWeek.WEDNESDAY);
-        result.add(DayOfWeek.THURSDAY);
-        result.add(DayOfWeek.FRIDAY);
-        result.add(DayOfWeek.SATURDAY);
-        return result;
-    }
-
-    boolean inArticle;
-
-    String paper;
-    boolean isTheExpressArticle;
-    boolean isDailyMailOrMailOnSundayArticle;
-    boolean isDailyMirrorArticle;
-    boolean isGuardianArticle;
-    boolean isTelegraphArticle;
-    boolean isMENArticle;
-    boolean isBENArticle;
-    boolean isTheEveningStandardArticle;
-
     /**
-     * Iteratively parse through nodes.
+     * Counts the terms in termSet in the articles in htmlFiles for each date
+     * range in dates. If cacheResults is true then cached results are used
+     * for the files that have not changed since they were cached (see
+     * {@link Text_ResultCache}) and the results for the other files are
+     * counted (see {@link #count(ForkJoinPool, Text_TermSet, ArrayList,
+     * String, ArrayList, Text_PartialResult[])}) and cached. The results for
+     * the files are combined in the order of the files.
      *
-     * @param node
+     * @param pool The pool for parsing in parallel.
+     * @param termSet The terms.
+     * @param dates The date ranges.
+     * @param name The name of the directory of the HTML files.
+     * @param htmlFiles The HTML files.
+     * @return The results.
+     * @throws IOException If encountered.
      */
-    boolean isArticleNode(Node node) {
-        //System.out.println(node.toString());
-        String nodeName;
-        nodeName = node.nodeName();
-        //System.out.println("nodeName"+ nodeName);
-        int nodeAttributeIndex;
-        Attributes nodeAttributes;
-        Iterator<Attribute> iteA;
-        Attribute nodeAttribute;
-        String key;
-        String value;
-        nodeAttributeIndex = 0;
-        nodeAttributes = node.attributes();
-        iteA = nodeAttributes.iterator();
-        while (iteA.hasNext()) {
-            //System.out.println("nodeAttributeIndex"+ nodeAttributeIndex);
-            nodeAttribute = iteA.next();
-            key = nodeAttribute.getKey();
-            value = nodeAttribute.getValue();
-            //System.out.println("key"+ key);
-            //System.out.println("value"+ value);
-            if (papers.contains(value)) {
-                //System.out.println(value);
-                paper = value;
-                isTheExpressArticle = value.equalsIgnoreCase(sTheExpress);
-                isDailyMailOrMailOnSundayArticle = value.equalsIgnoreCase(sDailyMail)
-                        || value.equalsIgnoreCase(sMailOnSunday);
-                isDailyMirrorArticle = value.equalsIgnoreCase(sDailyMirror);
-                isGuardianArticle = value.equalsIgnoreCase(sTheGuardian);
-                isTelegraphArticle = value.equalsIgnoreCase(sTheDailyTelegraph);
-                isBENArticle = value.equalsIgnoreCase(sBEN);
-                isMENArticle = value.equalsIgnoreCase(sMEN);
-                isTheEveningStandardArticle = value.equalsIgnoreCase(sTheEveningStandard);
-                return true;
-                //parseExpressNode(node);
+    Text_PartialResult count(ForkJoinPool pool, Text_TermSet termSet,
+            ArrayList<Generic_LocalDateRange> dates, String name,
+            ArrayList<Text_Source> htmlFiles) throws IOException {
+        int n = termSet.getN();
+        int nr = dates.size();
+        Text_PartialResult[] results = new Text_PartialResult[htmlFiles.size()];
+        Text_ResultCache cache = null;
+        if (cacheResults && resultCacheDir != null) {
+            cache = Text_ResultCache.open(resultCacheDir.resolve(name),
+                    Text_ResultCache.getKey(termSet, dates, papers,
+                            headlineTerm), papers, n, nr);
+            for (int f = 0; f < results.length; f++) {
+                results[f] = cache.get(htmlFiles.get(f), f);
             }
-            nodeAttributeIndex++;
         }
-        return false;
-    }
-
-    String Date;
-    boolean gotDate;
-    int returnCount;
-
-    /**
-     * @param node
-     */
-    boolean getDate(Node node) {
-        //System.out.println(node.toString());
-        String nodeName;
-        nodeName = node.nodeName();
-        //System.out.println("nodeName"+ nodeName);
-        int nodeAttributeIndex;
-        Attributes nodeAttributes;
-        Iterator<Attribute> iteA;
-        Attribute nodeAttribute;
-        String key;
-        String value;
-        nodeAttributeIndex = 0;
-        nodeAttributes = node.attributes();
-        iteA = nodeAttributes.iterator();
-        while (iteA.hasNext()) {
-            //System.out.println("nodeAttributeIndex"+ nodeAttributeIndex);
-            nodeAttribute = iteA.next();
-            key = nodeAttribute.getKey();
-            value = nodeAttribute.getValue();
-            //System.out.println("key"+ key);
-            //System.out.println("value"+ value);
-            if (key.equalsIgnoreCase("#text")) {
-                if (!value.equalsIgnoreCase("\n")) {
-                    Date += value;
-                    if (isGuardianArticle) {
-                        if (value.endsWith("GMT")) {
-                            return true;
-                        }
-                    } else {
-                        if (value.endsWith("day")) {
-                            return true;
-                        }
-                    }
+        Text_PartialResult[] counted = new Text_PartialResult[results.length];
+        boolean toCount = false;
+        for (int f = 0; f < results.length; f++) {
+            if (results[f] == null) {
+                counted[f] = new Text_PartialResult(papers, n, nr);
+                toCount = true;
+            }
+        }
+        if (toCount) {
+            count(pool, termSet, dates, name, htmlFiles, counted);
+        }
+        Text_PartialResult result = new Text_PartialResult(papers, n, nr);
+        for (int f = 0; f < results.length; f++) {
+            if (counted[f] != null) {
+                results[f] = counted[f];
+                if (cache != null) {
+                    cache.put(htmlFiles.get(f), counted[f]);
                 }
             }
-            nodeAttributeIndex++;
+            result.add(results[f]);
+        }
+        if (cache != null) {
+            cache.write(htmlFiles);
         }
-        return false;
+        return result;
     }
 
-    String Title;
-    boolean startTitle;
-    boolean gotTitle;
-
     /**
-     * @param node
+     * Counts the terms in termSet in the articles in the files in htmlFiles
+     * that there are results for in results, adding the counts for each file
+     * to its results. If indexArticles is true and the terms can be counted
+     * using a {@link Text_ArticleIndex}, then the counts for the files that
+     * there are index segments for are produced from the segments that
+     * overlap the date ranges. Any other files are parsed in parallel, and if
+     * indexArticles is true, segments are added for the new files from the
+     * articles as they are extracted. Small segments are then merged in the
+     * background. Term bitmaps are also written for the segments used (see
+     * {@link #bitmapTerms(Text_TermSet, Path, int[][])}).
+     *
+     * @param pool The pool for parsing in parallel.
+     * @param termSet The terms.
+     * @param dates The date ranges.
+     * @param name The name of the directory of the HTML files.
+     * @param htmlFiles The HTML files.
+     * @param results The results for each file in htmlFiles, which are null
+     * for the files that are not to be counted.
+     * @throws IOException If encountered.
      */
-    boolean getTitle(Node node) {
-        //System.out.println(node.toString());
-        String nodeName;
-        nodeName = node.nodeName();
-        //System.out.println("nodeName"+ nodeName);
-        int nodeAttributeIndex;
-        Attributes nodeAttributes;
-        Iterator<Attribute> iteA;
-        Attribute nodeAttribute;
-        String key;
-        String value;
-        nodeAttributeIndex = 0;
-        nodeAttributes = node.attributes();
-        iteA = nodeAttributes.iterator();
-        while (iteA.hasNext()) {
-            //System.out.println("nodeAttributeIndex"+ nodeAttributeIndex);
-            nodeAttribute = iteA.next();
-            key = nodeAttribute.getKey();
-            value = nodeAttribute.getValue();
-            //System.out.println("key"+ key);
-            //System.out.println("value"+ value);
-            if (!startTitle) {
-                if (value.equalsIgnoreCase("c7")) {
-                    startTitle = true;
-                }
-            } else {
-                if (key.equalsIgnoreCase("#text")) {
-                    /**
-                     * Replace all non alphabetical non numeric characters with
-                     * a space. This is to help overcome issues with searching
-                     * for terms that might be found in other words. It is not a
-                     * perfect solution as some terms made up of several words
-                     * might fall across two sentences and not really be terms
-                     * at all, but just a set of words in the same order (e.g.
-                     * instead of counting"migrant crisis this might count"...
-                     * migrant. Crisis ...").
-                     */
-                    //value = value.replaceAll("[^A-Za-z0-9]"," ");
-                    Title += value;
+    void count(ForkJoinPool pool, Text_TermSet termSet,
+            ArrayList<Generic_LocalDateRange> dates, String name,
+            ArrayList<Text_Source> htmlFiles, Text_PartialResult[] results)
+            throws IOException {
+        HashMap<String, Integer> fileIds = new HashMap<>();
+        ArrayList<Text_Source> toParse = new ArrayList<>();
+        for (int f = 0; f < htmlFiles.size(); f++) {
+            fileIds.put(htmlFiles.get(f).getId(), f);
+            if (results[f] != null) {
+                toParse.add(htmlFiles.get(f));
+            }
+        }
+        Text_IndexSegments segments = null;
+        Text_IndexSegments.Appender appender = null;
+        int[] newFileIds = new int[htmlFiles.size()];
+        Arrays.fill(newFileIds, -1);
+        if (indexArticles && articleIndexDir != null) {
+            waitForMerge(name);
+            segments = Text_IndexSegments.open(articleIndexDir.resolve(name),
+                    papers);
+            List<Text_Source> newFiles = segments.update(htmlFiles);
+            newFiles.removeIf(f -> results[fileIds.get(f.getId())] == null);
+            if (!newFiles.isEmpty()) {
+                appender = segments.append(newFiles);
+                for (int f = 0; f < newFiles.size(); f++) {
+                    newFileIds[fileIds.get(newFiles.get(f).getId())] = f;
                 }
-                if (value.equalsIgnoreCase("c6")) {
-                    // Remove double spaces
-                    while (Title.contains("  ")) {
-                        Title = Title.replaceAll("  ", " ");
+            }
+            if (Text_ArticleIndex.canCount(termSet)) {
+                int headlineTermId = termSet.getId(headlineTerm);
+                for (Text_IndexSegments.Segment s
+                        : segments.getSegments(dates)) {
+                    List<Text_Source> fs = segments.getFiles(s);
+                    int[] ids = new int[fs.size()];
+                    boolean wanted = false;
+                    for (int f = 0; f < ids.length; f++) {
+                        ids[f] = fileIds.get(fs.get(f).getId());
+                        wanted = wanted || results[ids[f]] != null;
                     }
-                    return true;
+                    if (!wanted) {
+                        continue;
+                    }
+                    Text_ArticleIndex index = segments.getIndex(s);
+                    int[][] articlePatternCounts
+                            = index.getArticlePatternCounts(
+                                    termSet.getMatcher());
+                    bitmapTerms(termSet, segments.getPath(s),
+                            articlePatternCounts);
+                    index.count(termSet, dates, headlineTermId,
+                            articlePatternCounts, ids, results);
                 }
+                toParse = new ArrayList<>(newFiles);
             }
-            nodeAttributeIndex++;
         }
-        return false;
-    }
-
-    String Section;
-    boolean startSection;
-    boolean gotSection;
-
-    /**
-     * Iteratively parse through nodes.
-     *
-     * @param node
-     */
-    boolean getSection(Node node) {
-        //System.out.println("Node"+ node.toString());
-        String nodeName;
-        nodeName = node.nodeName();
-        //System.out.println("nodeName"+ nodeName);
-        int nodeAttributeIndex;
-        Attributes nodeAttributes;
-        Iterator<Attribute> iteA;
-        Attribute nodeAttribute;
-        String key;
-        String value;
-        nodeAttributeIndex = 0;
-        nodeAttributes = node.attributes();
-        iteA = nodeAttributes.iterator();
-        while (iteA.hasNext()) {
-            //System.out.println("nodeAttributeIndex"+ nodeAttributeIndex);
-            nodeAttribute = iteA.next();
-            key = nodeAttribute.getKey();
-            value = nodeAttribute.getValue();
-            //System.out.println("key"+ key);
-            //System.out.println("value"+ value);
-            if (!startSection) {
-                if (value.equalsIgnoreCase("SECTION: ")) {
-                    startSection = true;
+        if (!toParse.isEmpty()) {
+            /**
+             * The files are processed in a pipeline (see
+             * {@link Text_ArticlePipeline}). Each extractor thread takes the
+             * next file when it is done with a file. Files are taken largest
+             * first to balance the load, and the files that are not already
+             * in article stores are read ahead in the same order.
+             */
+            Text_IndexSegments.Appender b = appender;
+            ArrayList<Text_Source> fs = Text_Corpus.sortLargestFirst(toParse);
+            ArrayList<Text_Source> toRead = new ArrayList<>();
+            if (readAheadFiles > 0) {
+                Text_ArticleParser parser = new Text_ArticleParser(this);
+                for (Text_Source f : fs) {
+                    if (!parser.isStored(f)) {
+                        toRead.add(f);
+                    }
                 }
-            } else {
-                if (key.equalsIgnoreCase("#text")) {
-                    Section += value;
-                    return true;
+            }
+            int[] ids = new int[fs.size()];
+            ArrayList<Consumer<Text_Article>> also = new ArrayList<>();
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = fileIds.get(fs.get(i).getId());
+                int nf = newFileIds[ids[i]];
+                also.add(b == null || nf == -1 ? null
+                        : (Text_Article a) -> b.add(nf, a));
+            }
+            ExecutorService readers = virtualThreads
+                    ? Text_ReadAhead.newVirtualThreadExecutor() : null;
+            try (Text_ReadAhead readAhead = readers == null
+                    ? new Text_ReadAhead(toRead, readAheadFiles,
+                            readAheadThreads)
+                    : new Text_ReadAhead(toRead, Math.max(readAheadFiles,
+                            maxConcurrentReads), readers,
+                            maxConcurrentReads)) {
+                Text_ArticlePipeline pipeline = new Text_ArticlePipeline(this,
+                        new Text_ArticleCounter(termSet, dates, headlineTerm),
+                        pool.getParallelism(), matcherThreads,
+                        articleQueueSize);
+                pipeline.run(pool, fs, ids, also, readAhead, results);
+                /**
+                 * Print out the number of articles parsed in each time
+                 * period.
+                 */
+                Text_PaperDayCounts c = pipeline.getPaperArticleCounts();
+                for (int r = 0; r < dates.size(); r++) {
+                    long n = 0;
+                    for (String paper : c.getPapers()) {
+                        n += c.get(r, paper);
+                    }
+                    System.out.println("Parsed " + n + " articles from "
+                            + dates.get(r).getStart() + " to "
+                            + dates.get(r).getEnd() + " in " + fs.size()
+                            + " files");
+                }
+            } finally {
+                if (readers != null) {
+                    readers.shutdownNow();
                 }
             }
-            nodeAttributeIndex++;
         }
-        return false;
+        if (appender != null) {
+            appender.commit();
+        }
+        if (segments != null) {
+            merges.put(name, segments.mergeInBackground(pool));
+        }
     }
 
-    String Length;
-    boolean startLength;
-    boolean gotLength;
-
     /**
-     * Iteratively parse through nodes.
+     * Waits for any merge of the index segments for the directory name to
+     * finish.
      *
-     * @param node
+     * @param name The name of the directory of the HTML files.
+     * @throws IOException If the merge failed.
      */
-    boolean getLength(Node node) {
-        //System.out.println("Node"+ node.toString());
-        String nodeName;
-        nodeName = node.nodeName();
-        //System.out.println("nodeName"+ nodeName);
-        int nodeAttributeIndex;
-        Attributes nodeAttributes;
-        Iterator<Attribute> iteA;
-        Attribute nodeAttribute;
-        String key;
-        String value;
-        nodeAttributeIndex = 0;
-        nodeAttributes = node.attributes();
-        iteA = nodeAttributes.iterator();
-        while (iteA.hasNext()) {
-            //System.out.println("nodeAttributeIndex"+ nodeAttributeIndex);
-            nodeAttribute = iteA.next();
-            key = nodeAttribute.getKey();
-            value = nodeAttribute.getValue();
-            //System.out.println("key"+ key);
-            //System.out.println("value"+ value);
-            if (!startLength) {
-                if (value.equalsIgnoreCase("LENGTH: ")) {
-                    startLength = true;
-                }
-            } else {
-                if (key.equalsIgnoreCase("#text")) {
-                    Length += value;
-                    return true;
-                }
+    void waitForMerge(String name) throws IOException {
+        Future<?> merge = merges.remove(name);
+        if (merge != null) {
+            try {
+                merge.get();
+            } catch (InterruptedException | ExecutionException ex) {
+                throw new IOException(ex);
             }
-            nodeAttributeIndex++;
         }
-        return false;
     }
 
-    String Article;
-    boolean startArticle;
-    boolean gotArticle;
-
     /**
-     * Iteratively parse through nodes.
+     * If bitmapTerms is true and the term bitmaps for the index at indexPath
+     * are not current, creates them from articlePatternCounts and writes
+     * them.
      *
-     * @param node
+     * @param termSet The terms.
+     * @param indexPath The index file.
+     * @param articlePatternCounts The counts of the patterns in each article
+     * in the index.
+     * @throws IOException If encountered.
      */
-    boolean getArticle(Node node) {
-        //System.out.println("Node"+ node.toString());
-        if (node.toString().equalsIgnoreCase("LOAD-DATE ")) {
-            return true;
+    void bitmapTerms(Text_TermSet termSet, Path indexPath,
+            int[][] articlePatternCounts) throws IOException {
+        if (!bitmapTerms) {
+            return;
         }
-        String nodeName;
-        nodeName = node.nodeName();
-        //System.out.println("nodeName"+ nodeName);
-        // end at div
-        int nodeAttributeIndex;
-        Attributes nodeAttributes;
-        Iterator<Attribute> iteA;
-        Attribute nodeAttribute;
-        String key;
-        String value;
-
-//        if (node.childNodeSize() > 0) {
-//            List<Node> childNodes;
-//            childNodes = node.childNodes();
-//            Node childNode;
-//            Iterator<Node> ite;
-//            ite = childNodes.iterator();
-//            while (ite.hasNext()) {
-//                childNode = ite.next();
-//                System.out.println("Node"+ childNode.toString());
-////                if (childNode.toString().equalsIgnoreCase("SECTION: ")) {
-////                    startSection = true;
-////                }
-//                nodeAttributeIndex = 0;
-//                nodeAttributes = node.attributes();
-//                iteA = nodeAttributes.iterator();
-//                while (iteA.hasNext()) {
-//                    System.out.println("nodeAttributeIndex"+ nodeAttributeIndex);
-//                    nodeAttribute = iteA.next();
-//                    key = nodeAttribute.getKey();
-//                    value = nodeAttribute.getValue();
-//                    System.out.println("key"+ key);
-//                    System.out.println("value"+ value);
-//                    if (!startLength) {
-//                        if (value.equalsIgnoreCase("c7")) {
-//                            startLength = true;
-//                        }
-//                    } else {
-//                        if (key.equalsIgnoreCase("#text")) {
-//                            Length += value;
-//                            //if (value.endsWith("day")) {
-//                            //    return true;
-//                            //}
-//                        }
-////                if (value.equalsIgnoreCase("c6")) {
-////                    return true;
-////                }
-//                    }
-//                    nodeAttributeIndex++;
-//                }
-//
-//            }
-//        }
-        nodeAttributeIndex = 0;
-        nodeAttributes = node.attributes();
-        iteA = nodeAttributes.iterator();
-        while (iteA.hasNext()) {
-            //System.out.println("nodeAttributeIndex"+ nodeAttributeIndex);
-            nodeAttribute = iteA.next();
-            key = nodeAttribute.getKey();
-            value = nodeAttribute.getValue();
-            //System.out.println("key"+ key);
-            //System.out.println("value"+ value);
-            if (key.equalsIgnoreCase("#text")) {
-                if (!value.equalsIgnoreCase("\n")) {
-                    if (value.equalsIgnoreCase("LOAD-DATE: ")) {
-                        // Remove double spaces.
-                        while (Article.contains("  ")) {
-                            Article = Article.replaceAll("  ", " ");
-                        }
-                        return true;
-                    }
-                    /**
-                     * Replace all non alphabetical non numeric characters with
-                     * a space. This is to help overcome issues with searching
-                     * for terms that might be found in other words. It is not a
-                     * perfect solution as some terms made up of several words
-                     * might fall across two sentences and not really be terms
-                     * at all, but just a set of words in the same order (e.g.
-                     * instead of counting"migrant crisis this might count"...
-                     * migrant. Crisis ...").
-                     */
-                    //value = value.replaceAll("[^A-Za-z0-9]"," ");
-                    /**
-                     * Add space before punctuation and replace quotation marks
-                     * with spaces.
-                     */
-                    value = value.replaceAll("\\'", " ");
-                    value = value.replaceAll("\"", " ");
-                    value = value.replaceAll("\'", " ");
-                    value = value.replaceAll("\\.", " .");
-                    value = value.replaceAll("\\?", " ?");
-                    value = value.replaceAll("\\!", " !");
-                    value = value.replaceAll("\\,", " ,");
-                    value = value.replaceAll("\\;", " ;");
-                    value = value.replaceAll("\\:", " :");
-                    Article += value + " ";
-                }
-                //return true;
-                //if (value.endsWith("day")) {
-                //    return true;
-                //}
-            }
-//                if (value.equalsIgnoreCase("c6")) {
-//                    return true;
-//                }
-            nodeAttributeIndex++;
-        }
-        return false;
-    }
-
-    void parseChildNodes(Node node) {
-        if (node.childNodeSize() > 0) {
-            List<Node> childNodes;
-            childNodes = node.childNodes();
-            Node childNode;
-            Iterator<Node> ite;
-            ite = childNodes.iterator();
-            while (ite.hasNext()) {
-                childNode = ite.next();
-                isArticleNode(childNode);
-            }
+        Path path = Text_TermBitmaps.getPath(indexPath);
+        if (Text_TermBitmaps.open(path, termSet, indexPath) == null) {
+            Text_TermBitmaps.build(termSet, articlePatternCounts).write(path,
+                    indexPath);
         }
     }
 
     /**
-     * This method parses the HTML file and returns results that are packed into
-     * an Object[] result of size 5. result[0] is an int[] containing counts of
-     * the numbers of mentions of each terms. result[1] is an int[] containing
-     * counts of the numbers of articles that mentions of each terms. result[2]
-     * is TreeMap with keys that are the DayOfWeek and values that are counts of
-     * the number of times each term appears in those days articles. result[3]
-     * is TreeMap with keys that are the DayOfWeek and values that are counts of
-     * the number of articles each term appears in those days. result[4] is a
-     * TreeSet of DateHeadlines which provides the dates and headlines of those
-     * articles that mention headlineTerm in them.
+     * Writes out a summary of counts.
      *
-     * @param n
-     * @param startDate
-     * @param endDate
-     * @param allterms
-     * @param input The input file to be parsed.
-     * @return
+     * @param pwCounts The PrintWriter to write to.
+     * @param mondayToSaturday The days to write counts for.
+     * @param termSet The terms.
+     * @param grandTotalTermCounts The term counts.
+     * @param grandTotalArticleCountsForTerms The article counts for terms.
+     * @param grandTotalTermCountOnDays The term counts by day.
+     * @param grandTotalArticleCountsForTermsOnDays The article counts for
+     * terms by day.
      */
-    public Object[] parseHTML(int n, LocalDate startDate, LocalDate endDate,
-            TreeMap<Integer, ArrayList<String>> allterms, File input) {
-        inArticle = false;
-        gotDate = false;
-        gotTitle = false;
-        Object[] result = new Object[5];
-        TreeSet<DateOutlineDetails> headlineTermDateHeadlines;
-        headlineTermDateHeadlines = new TreeSet<>();
-//        BufferedReader br;
-//        br = Generic_IO.getBufferedReader(input);
-
-        Document doc = null;
-        try {
-            doc = Jsoup.parse(input, "utf-8");
-            //String title = doc.title();
-            //System.out.println(title);
-
-        } catch (IOException ex) {
-            Logger.getLogger(Text_Processor2.class
-                    .getName()).log(Level.SEVERE, null, ex);
+    void writeCounts(PrintWriter pwCounts,
+            ArrayList<DayOfWeek> mondayToSaturday, Text_TermSet termSet,
+            int[] grandTotalTermCounts, int[] grandTotalArticleCountsForTerms,
+            Text_TermDayCounts grandTotalTermCountOnDays,
+            Text_TermDayCounts grandTotalArticleCountsForTermsOnDays) {
+        /**
+         * Write header
+         */
+        String header;
+        header = "Term Type,Term,Total Term Count,Total Article Count";
+        Iterator<DayOfWeek> ite3;
+        DayOfWeek day;
+        ite3 = mondayToSaturday.iterator();
+        while (ite3.hasNext()) {
+            day = ite3.next();
+            header += ",Term Count On " + day;
         }
-
-        ArrayList<String> terms;
-        int[] totalTermCounts = new int[n];
-        result[0] = totalTermCounts;
-        int[] totalArticleCountsForTerms = new int[n];
-        result[1] = totalArticleCountsForTerms;
-        HashMap<String, Integer> termCounts = new HashMap<>();
-        //int[] termCounts = new int[n];
-        //int[] articleCountsForTerms = new int[n];
-        TreeMap<String, TreeMap<DayOfWeek, Integer>> totalTermCountByDay;
-        totalTermCountByDay = new TreeMap<>();
-        TreeMap<String, TreeMap<DayOfWeek, Integer>> totalArticleCountForTermsByDay;
-        totalArticleCountForTermsByDay = new TreeMap<>();
-        int i;
+        ite3 = mondayToSaturday.iterator();
+        while (ite3.hasNext()) {
+            day = ite3.next();
+            header += ",Article Count On " + day;
+        }
+        System.out.println(header);
+        pwCounts.println(header);
+        /**
+         * Write lines
+         */
+        Text_TermQuery query;
         String term;
-        Iterator<String> ite2;
-        i = 0;
-        Iterator<Integer> iteB;
-        iteB = allterms.keySet().iterator();
-        while (iteB.hasNext()) {
-            terms = allterms.get(iteB.next());
-            ite2 = terms.iterator();
-            while (ite2.hasNext()) {
-                term = ite2.next();
-                totalTermCounts[i] = 0;
-                totalArticleCountsForTerms[i] = 0;
-                termCounts.put(term, 0);
-                //termCounts[i] = 0;
-                //articleCountsForTerms[i] = 0;
-                i++;
-                totalTermCountByDay.put(term, new TreeMap<>());
-                totalArticleCountForTermsByDay.put(term, new TreeMap<>());
-            }
+        for (int i = 0; i < termSet.getN(); i++) {
+            query = termSet.get(i);
+            String termType = query.getType();
+            term = query.getTerm();
+            System.out.print(termType);
+            pwCounts.print(termType);
+            System.out.print("," + term);
+            pwCounts.print("," + term);
+            System.out.print("," + grandTotalTermCounts[i]);
+            pwCounts.print("," + grandTotalTermCounts[i]);
+            System.out.print("," + grandTotalArticleCountsForTerms[i]);
+            pwCounts.print("," + grandTotalArticleCountsForTerms[i]);
+            printTermCountOnDay(pwCounts, mondayToSaturday, i,
+                    grandTotalTermCountOnDays);
+            printTermCountOnDay(pwCounts, mondayToSaturday, i,
+                    grandTotalArticleCountsForTermsOnDays);
+            System.out.println();
+            pwCounts.println();
         }
+    }
 
-        Elements elements;
-        Element element;
-        Iterator<Element> ite;
-        Attributes elementAttributes;
-        Attribute elementAttribute;
-        List<Node> nodes;
-        Iterator<Node> iteN;
-        Node node;
-        Attributes nodeAttributes;
-        Attribute nodeAttribute;
-        Iterator<Attribute> iteA;
-        String key;
-        String value;
-
-        int elementIndex = 0;
-        int elementAttributeIndex;
-        int nodeIndex;
-
-        elements = doc.getAllElements();// work from here using jsoup
-        //Elements links = doc.getElementsByTag("div");
-        ite = elements.iterator();
+    void printTermCountOnDay(PrintWriter pw,
+            ArrayList<DayOfWeek> mondayToSaturday, int termId,
+            Text_TermDayCounts grandTotalTermCountOnDays) {
+        Iterator<DayOfWeek> ite;
+        DayOfWeek day;
+        int i;
+        ite = mondayToSaturday.iterator();
         while (ite.hasNext()) {
-
-            // if inExpress then do the next thing here...
-            //System.out.println("elementIndex"+ elementIndex);
-            element = ite.next();
-            if (element.hasText()) {
-                //System.out.println(element.wholeText()); // Prints out entire document
-                //System.out.println(element.text()); // Prints out entire document
-                //System.out.println(element.nodeName());
-            }
-            elementAttributeIndex = 0;
-            elementAttributes = element.attributes();
-            iteA = elementAttributes.iterator();
-            while (iteA.hasNext()) {
-                //System.out.println("elementAttributeIndex"+ elementAttributeIndex);
-                nodeAttribute = iteA.next();
-                key = nodeAttribute.getKey();
-                value = nodeAttribute.getValue();
-                //System.out.println("key"+ key);
-                //System.out.println("value"+ value);
-                elementAttributeIndex++;
-            }
-            nodeIndex = 0;
-            nodes = element.childNodes();
-            iteN = nodes.iterator();
-            while (iteN.hasNext()) {
-                //System.out.println("nodeIndex"+ nodeIndex);
-                node = iteN.next();
-                if (inArticle) {
-                    if (gotDate) {
-                        if (gotTitle) {
-                            if (gotSection) {
-                                if (gotLength) {
-                                    gotArticle = getArticle(node);
-                                } else {
-                                    gotLength = getLength(node);
-                                    Article = " "; // The space could be important.
-                                }
-                            } else {
-                                if (isDailyMailOrMailOnSundayArticle) {
-                                    gotSection = true;
-                                } else {
-                                    gotSection = getSection(node);
-                                }
-                                Length = "";
-                            }
-                        } else {
-                            //System.out.println("Got Date");
-                            gotTitle = getTitle(node);
-                            Section = "";
-                        }
-                    } else {
-                        //System.out.println("In Express Article");
-                        gotDate = getDate(node);
-                        Title = " ";  // The space could be important.
-                    }
-                } else {
-                    inArticle = isArticleNode(node);
-                    Date = "";
-                }
-                nodeIndex++;
-            }
-            if (gotArticle) {
-                //System.out.println("Got everything needed to process article... Process and reset.");
-                //System.out.println("Date" + Date);
-                LocalDate ld = parseDate(Date);
-
-                // Filter for a given time period               
-                if (ld.isAfter(startDate) && ld.isBefore(endDate)) {
-                    paperArticleCounts.put(paper,
-                            paperArticleCounts.get(paper) + 1);
-                    //System.out.println("Title" + Title);
-                    //System.out.println("Section" + Section);
-                    //System.out.println("Length" + Length);
-                    //System.out.println("Article" + Article);
-                    DayOfWeek day = ld.getDayOfWeek();
-                    TreeMap<DayOfWeek, Integer> articleCountsByDayOfWeek;
-                    articleCountsByDayOfWeek = paperArticleCountsByDayOfWeek.get(paper);
-
-                    articleCountsByDayOfWeek.put(day,
-                            articleCountsByDayOfWeek.get(day) + 1);
-                    i = 0;
-                    iteB = allterms.keySet().iterator();
-                    while (iteB.hasNext()) {
-                        terms = allterms.get(iteB.next());
-                        ite2 = terms.iterator();
-                        while (ite2.hasNext()) {
-                            term = ite2.next();
-                            int c0 = termCounts.get(term);
-                            int c1 = getTermCount(term, Article);
-                            termCounts.put(term, c0 + c1);
-                            if (c1 > 0) {
-                                totalTermCounts[i] += c1;
-                                totalArticleCountsForTerms[i]++;
-                                addToCount(totalArticleCountForTermsByDay.get(term), day, 1);
-                            }
-                            addToCount(totalTermCountByDay.get(term), day, c1);
-                            i++;
-                        }
-                    }
-                    /**
-                     * Store DateHeadline's for those articles on Saturdays that
-                     * contain the term headlineTerm.
-                     */
-                    if (termCounts.get(headlineTerm) != null) {
-                        if (termCounts.get(headlineTerm) > 0) {
-                            if (ld.getDayOfWeek().equals(DayOfWeek.SATURDAY)) {
-//                        // Fire off to Guardian Open Data to try to get page number...
-//                        // This is now done in agdt-web in uk.ac.leeds.ccg.andyt.web.guardian.GuardianGetPage
-//                        // See 
-//                        if (!isTheExpressArticle) {
-//                            int code = 1;
-//                            String title;
-//                            title = Title.replaceAll(" ","-");
-//                            title = title.replaceAll("\\.","");
-//                            title = title.replaceAll(";","");
-//                            title = title.replaceAll(":","");
-//                            title = title.replaceAll("\\?","");
-//                            title = title.replaceAll("!","");
-//                            String url;
-//                            url ="http://content.guardianapis.com/search"
-//                                    + "?show-fields="
-//                                    + "newspaperPageNumber%2C"
-//                                    + "newspaperEditionDate&q="
-//                                    + title +"&api-key="+ GuardianAPIKey;
-//                        }
-                                headlineTermDateHeadlines.add(new DateOutlineDetails(ld,
-                                        Section, Length, Title));
-                            }
-                        }
-                    }
-                }
-                Iterator<Integer> iteC;
-                iteC = allterms.keySet().iterator();
-                Iterator<String> ite3;
-                while (iteC.hasNext()) {
-                    terms = allterms.get(iteC.next());
-                    ite3 = terms.iterator();
-                    while (ite3.hasNext()) {
-                        term = ite3.next();
-                        termCounts.put(term, 0);
-                    }
-                }
-//                for (i = 0; i < n; i++) {
-//                    termCounts[i] = 0;
-//                }
-                inArticle = false;
-                gotDate = false;
-                startTitle = false;
-                gotTitle = false;
-                startSection = false;
-                gotSection = false;
-                startLength = false;
-                gotLength = false;
-                gotArticle = false;
-            }
-            elementIndex++;
+            day = ite.next();
+            i = grandTotalTermCountOnDays.get(termId, day);
+            System.out.print("," + i);
+            pw.print("," + i);
         }
-        result[2] = totalTermCountByDay;
-        result[3] = totalArticleCountForTermsByDay;
-        result[4] = headlineTermDateHeadlines;
+    }
+
+    ArrayList<DayOfWeek> getMondayToSaturday() {
+        ArrayList<DayOfWeek> result;
+        result = new ArrayList<>();
+        result.add(DayOfWeek.MONDAY);
+        result.add(DayOfWeek.TUESDAY);
+        result.add(DayOfWeek.WEDNESDAY);
+        result.add(DayOfWeek.THURSDAY);
+        result.add(DayOfWeek.FRIDAY);
+        result.add(DayOfWeek.SATURDAY);
         return result;
     }
 
     /**
-     * Adds totalTermCountOnDay values to grandTotalTermCountOnDays values for
-     * the same keys.
+     * This method parses the HTML file and returns results for each date range
+     * in dates. Each article is parsed once, the terms in it are counted once
+     * and the counts are added to the results for each date range that
+     * contains the article. The parsing is done by a new
+     * {@link Text_ArticleParser} so that this can be called concurrently for
+     * different files.
      *
-     * @param totalTermCountOnDay
-     * @param grandTotalTermCountOnDays
+     * @param termSet The compiled terms.
+     * @param dates The date ranges.
+     * @param input The input file to be parsed.
+     * @return The results for input.
      */
-    public void addToCount(
-            TreeMap<DayOfWeek, Integer> totalTermCountOnDay,
-            TreeMap<DayOfWeek, Integer> grandTotalTermCountOnDays) {
-        DayOfWeek day;
-        int i;
-        Iterator<DayOfWeek> ite = totalTermCountOnDay.keySet().iterator();
-        while (ite.hasNext()) {
-            day = ite.next();
-            if (grandTotalTermCountOnDays.containsKey(day)) {
-                i = grandTotalTermCountOnDays.get(day);
-                i += totalTermCountOnDay.get(day);
-            } else {
-                i = totalTermCountOnDay.get(day);
-            }
-            grandTotalTermCountOnDays.put(day, i);
-        }
+    public Text_PartialResult parseHTML(Text_TermSet termSet,
+            ArrayList<Generic_LocalDateRange> dates, Text_Source input) {
+        return new Text_ArticleParser(this).parse(termSet, dates, input);
     }
 
     /**
-     * Adds count to the day entry in termCount.
-     *
-     * @param termCount
-     * @param day
-     * @param count
+     * @param input An HTML input file.
+     * @return The path of the article store for input or null if articles
+     * are not stored. This is the id of input resolved against the article
+     * store directory, so inputs with the same name in different directories
+     * or zip archives have different stores.
      */
-    public void addToCount(TreeMap<DayOfWeek, Integer> termCount,
-            DayOfWeek day, int count) {
-        int i;
-        if (termCount.containsKey(day)) {
-            i = termCount.get(day);
-            i += count;
-        } else {
-            i = count;
+    Path getArticleStore(Text_Source input) {
+        if (!storeArticles || articleStoreDir == null) {
+            return null;
         }
-        termCount.put(day, i);
+        return articleStoreDir.resolve(input.getId() + ".dat");
     }
 
     /**
@@ -1297,13 +983,18 @@ public class Text_Processor2 extends Text_Object {
     }
 
     /**
-     * For parsing a String into a LocalDate.
+     * For parsing a String into a LocalDate. Dates like "March 12, 2016
+     * Saturday" are parsed by dateParser without creating any strings, and
+     * other dates are parsed by splitting s.
      *
      * @param line
      * @return
      */
     LocalDate parseDate(String s) {
-        LocalDate result;
+        LocalDate result = dateParser.parse(s, 0, " ", false);
+        if (result != null) {
+            return result;
+        }
         String month;
         String dayOfMonth;
         String year;
@@ -1356,7 +1047,7 @@ public class Text_Processor2 extends Text_Object {
      * different instances can be ordered which the are first by Date and then
      * by the String.
      */
-    public class DateOutlineDetails implements Comparable<DateOutlineDetails> {
+    public static class DateOutlineDetails implements Comparable<DateOutlineDetails> {
 
         LocalDate LD;
         String Section;
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.process;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import uk.ac.leeds.ccg.data.text.io.Text_Source;
+import uk.ac.leeds.ccg.data.text.term.Text_TermQuery;
+import uk.ac.leeds.ccg.data.text.term.Text_TermSet;
+import uk.ac.leeds.ccg.generic.time.Generic_LocalDateRange;
+
+/**
+ * A cache of the {@link Text_PartialResult} for each file in a directory of
+ * LexisNexis HTML files, so that files that have not changed since an
+ * earlier run need not be counted again.
+ *
+ * The cache is a directory with a manifest and a results file for each file.
+ * The manifest has: a magic number; a version; a key; and for each file, the
+ * id (see {@link Text_Source}), the length, the last modified time and a SHA-256 hash of the
+ * content. The key is a hash of everything other than the files that the
+ * results depend on: the terms, the date ranges, the papers and the headline
+ * term (see {@link #getKey(Text_TermSet, List, List, String)}). If the key is
+ * different then none of the cached results are used.
+ *
+ * Cached results are used for a file if the length and last modified time
+ * are the same as those in the manifest. If only the last modified time is
+ * different, the content is hashed and the cached results are used if the
+ * hash is the same, so files that are downloaded again but have not changed
+ * are not counted again.
+ */
+public class Text_ResultCache {
+
+    /**
+     * For identifying a manifest file.
+     */
+    static final int MAGIC = 0x54585243;
+
+    /**
+     * The version of the cache format.
+     */
+    static final int VERSION = 2;
+
+    /**
+     * The name of the manifest file.
+     */
+    static final String MANIFEST = "manifest";
+
+    /**
+     * The directory of the cache.
+     */
+    final Path dir;
+
+    /**
+     * The key of the results.
+     */
+    final String key;
+
+    /**
+     * The names of the papers.
+     */
+    final List<String> papers;
+
+    /**
+     * The number of terms.
+     */
+    final int n;
+
+    /**
+     * The number of date ranges.
+     */
+    final int nr;
+
+    /**
+     * The entry for each file keyed by file id.
+     */
+    final HashMap<String, Entry> entries;
+
+    /**
+     * Set to true if the manifest needs writing.
+     */
+    boolean changed;
+
+    private Text_ResultCache(Path dir, String key, List<String> papers, int n,
+            int nr) {
+        this.dir = dir;
+        this.key = key;
+        this.papers = papers;
+        this.n = n;
+        this.nr = nr;
+        entries = new HashMap<>();
+    }
+
+    /**
+     * Opens the cache in dir.
+     *
+     * @param dir The directory of the cache.
+     * @param key The key the results must be for.
+     * @param papers The names of the papers.
+     * @param n The number of terms.
+     * @param nr The number of date ranges.
+     * @return The cache, which is empty if there is no manifest in dir or if
+     * it is not of the current version for key.
+     * @throws IOException If encountered.
+     */
+    public static Text_ResultCache open(Path dir, String key,
+            List<String> papers, int n, int nr) throws IOException {
+        Text_ResultCache r = new Text_ResultCache(dir, key, papers, n, nr);
+        Path path = dir.resolve(MANIFEST);
+        if (!Files.exists(path)) {
+            r.changed = Files.exists(dir);
+            return r;
+        }
+        try (DataInputStream dis = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path)))) {
+            if (dis.readInt() != MAGIC || dis.readInt() != VERSION
+                    || !dis.readUTF().equals(key)) {
+                r.changed = true;
+                return r;
+            }
+            int ne = dis.readInt();
+            for (int i = 0; i < ne; i++) {
+                Entry e = new Entry(dis.readUTF(), dis.readLong(),
+                        dis.readLong(), dis.readUTF());
+                r.entries.put(e.id, e);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param termSet The terms.
+     * @param dates The date ranges.
+     * @param papers The names of the papers.
+     * @param headlineTerm The headline term.
+     * @return A key for the results for termSet, dates, papers and
+     * headlineTerm.
+     */
+    public static String getKey(Text_TermSet termSet,
+            List<Generic_LocalDateRange> dates, List<String> papers,
+            String headlineTerm) {
+        StringBuilder sb = new StringBuilder();
+        for (int t = 0; t < termSet.getN(); t++) {
+            Text_TermQuery q = termSet.get(t);
+            sb.append(q.getType()).append('\t').append(q.getTerm())
+                    .append('\n');
+        }
+        sb.append('\n');
+        for (Generic_LocalDateRange range : dates) {
+            sb.append(range.getStart()).append('\t').append(range.getEnd())
+                    .append('\n');
+        }
+        sb.append('\n');
+        for (String p : papers) {
+            sb.append(p).append('\n');
+        }
+        sb.append('\n').append(headlineTerm);
+        MessageDigest md = getDigest();
+        return toHex(md.digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @param f The file.
+     * @param id The index of f in the files being processed, which the
+     * headlines are kept for.
+     * @return The cached results for f or null if there are none or if f has
+     * changed.
+     * @throws IOException If encountered.
+     */
+    public Text_PartialResult get(Text_Source f, int id) throws IOException {
+        Entry e = entries.get(f.getId());
+        if (e == null || e.length != f.length()) {
+            return null;
+        }
+        if (e.lastModified != f.lastModified()) {
+            if (!hash(f).equals(e.hash)) {
+                return null;
+            }
+            entries.put(e.id, new Entry(e.id, e.length,
+                    f.lastModified(), e.hash));
+            changed = true;
+        }
+        Path path = getPath(f);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (DataInputStream dis = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path)))) {
+            return Text_PartialResult.read(dis, papers, n, nr, id);
+        }
+    }
+
+    /**
+     * Caches result for f.
+     *
+     * @param f The file.
+     * @param result The results for f.
+     * @throws IOException If encountered.
+     */
+    public void put(Text_Source f, Text_PartialResult result)
+            throws IOException {
+        Entry e = new Entry(f.getId(), f.length(), f.lastModified(),
+                hash(f));
+        Path path = getPath(f);
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, f.getName(), ".tmp");
+        try {
+            try (DataOutputStream dos = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                result.write(dos, papers);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        entries.put(e.id, e);
+        changed = true;
+    }
+
+    /**
+     * Writes the manifest if it has changed, first removing the entries and
+     * any other files for files not in files.
+     *
+     * @param files The files to keep entries for.
+     * @throws IOException If encountered.
+     */
+    public void write(List<Text_Source> files) throws IOException {
+        HashSet<String> keep = new HashSet<>();
+        for (Text_Source f : files) {
+            if (entries.containsKey(f.getId())) {
+                keep.add(getPath(f).getFileName().toString());
+            }
+        }
+        keep.add(MANIFEST);
+        if (entries.size() != keep.size() - 1) {
+            changed = true;
+        }
+        if (!changed) {
+            return;
+        }
+        ArrayList<Entry> es = new ArrayList<>();
+        for (Text_Source f : files) {
+            Entry e = entries.get(f.getId());
+            if (e != null) {
+                es.add(e);
+            }
+        }
+        Files.createDirectories(dir);
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) {
+                if (!keep.contains(p.getFileName().toString())) {
+                    Files.delete(p);
+                }
+            }
+        }
+        Path path = dir.resolve(MANIFEST);
+        Path tmp = Files.createTempFile(dir, MANIFEST, ".tmp");
+        try {
+            try (DataOutputStream dos = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                dos.writeInt(MAGIC);
+                dos.writeInt(VERSION);
+                dos.writeUTF(key);
+                dos.writeInt(es.size());
+                for (Entry e : es) {
+                    dos.writeUTF(e.id);
+                    dos.writeLong(e.length);
+                    dos.writeLong(e.lastModified);
+                    dos.writeUTF(e.hash);
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        changed = false;
+    }
+
+    /**
+     * @param f The file.
+     * @return The results file for f. The name is the id of f encoded so
+     * that it is a single name and different for different ids.
+     */
+    Path getPath(Text_Source f) {
+        return dir.resolve(URLEncoder.encode(f.getId(), StandardCharsets.UTF_8)
+                + ".res");
+    }
+
+    /**
+     * @param f The file.
+     * @return The SHA-256 hash of the content of f in hexadecimal.
+     * @throws IOException If encountered.
+     */
+    static String hash(Text_Source f) throws IOException {
+        MessageDigest md = getDigest();
+        byte[] buf = new byte[65536];
+        try (InputStream is = f.newInputStream()) {
+            int l = is.read(buf);
+            while (l != -1) {
+                md.update(buf, 0, l);
+                l = is.read(buf);
+            }
+        }
+        return toHex(md.digest());
+    }
+
+    private static MessageDigest getDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * An entry in the manifest.
+     */
+    static class Entry {
+
+        final String id;
+
+        final long length;
+
+        final long lastModified;
+
+        final String hash;
+
+        Entry(String id, long length, long lastModified, String hash) {
+            this.id = id;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.process;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import uk.ac.leeds.ccg.data.text.term.Text_TermMatcher;
+import uk.ac.leeds.ccg.data.text.term.Text_TermSet;
+import uk.ac.leeds.ccg.generic.time.Generic_LocalDateRange;
+
+/**
+ * For each term in a {@link Text_TermSet}, a {@link Text_Bitmap} of the ids
+ * of the articles in a {@link Text_ArticleIndex} that contain the term. So
+ * the number of articles that contain a term, a combination of terms or a
+ * term but not another can be had from memory without going through the
+ * articles or the postings, and these can be restricted to the articles in a
+ * date range (see {@link Text_ArticleIndex#getArticles(Generic_LocalDateRange)}).
+ *
+ * The bitmaps are written to a file next to the index. The file begins with a
+ * header: a magic number; a version; the size and last modified time of the
+ * index file; the terms; and the number of articles. The bitmaps for each
+ * term then follow in term id order and then {@link Text_ArticleStore#END}.
+ * The file is only used if the index file and the terms are the same as when
+ * it was written.
+ */
+public class Text_TermBitmaps {
+
+    /**
+     * For identifying a bitmaps file.
+     */
+    static final int MAGIC = 0x54584254;
+
+    /**
+     * The version of the bitmaps format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The terms indexed by term id.
+     */
+    final String[] terms;
+
+    /**
+     * The number of articles.
+     */
+    final int numberOfArticles;
+
+    /**
+     * For each term id, the ids of the articles that contain the term.
+     */
+    final Text_Bitmap[] bitmaps;
+
+    private Text_TermBitmaps(String[] terms, int numberOfArticles,
+            Text_Bitmap[] bitmaps) {
+        this.terms = terms;
+        this.numberOfArticles = numberOfArticles;
+        this.bitmaps = bitmaps;
+    }
+
+    /**
+     * Creates the bitmaps for the terms in termSet from the counts of the
+     * patterns in each article.
+     *
+     * @param termSet The terms.
+     * @param articlePatternCounts For each article id, the count of each
+     * pattern or null if none of the patterns are in the article (see
+     * {@link Text_ArticleIndex#getArticlePatternCounts(Text_TermMatcher)}).
+     * @return The bitmaps.
+     */
+    static Text_TermBitmaps build(Text_TermSet termSet,
+            int[][] articlePatternCounts) {
+        int n = termSet.getN();
+        Text_TermMatcher matcher = termSet.getMatcher();
+        Text_Bitmap[] bitmaps = new Text_Bitmap[n];
+        for (int t = 0; t < n; t++) {
+            bitmaps[t] = new Text_Bitmap();
+        }
+        for (int a = 0; a < articlePatternCounts.length; a++) {
+            if (articlePatternCounts[a] != null) {
+                int[] termCounts = matcher.getTermCounts(
+                        articlePatternCounts[a]);
+                for (int t = 0; t < n; t++) {
+                    if (termCounts[t] > 0) {
+                        bitmaps[t].add(a);
+                    }
+                }
+            }
+        }
+        return new Text_TermBitmaps(getTerms(termSet),
+                articlePatternCounts.length, bitmaps);
+    }
+
+    private static String[] getTerms(Text_TermSet termSet) {
+        String[] r = new String[termSet.getN()];
+        for (int t = 0; t < r.length; t++) {
+            r[t] = termSet.get(t).getTerm();
+        }
+        return r;
+    }
+
+    /**
+     * @param indexPath The index file.
+     * @return The bitmaps file for the index file indexPath.
+     */
+    public static Path getPath(Path indexPath) {
+        String name = indexPath.getFileName().toString();
+        if (name.endsWith(".idx")) {
+            name = name.substring(0, name.length() - 4);
+        }
+        return indexPath.resolveSibling(name + ".bitmaps");
+    }
+
+    /**
+     * Opens the bitmaps at path if they are current.
+     *
+     * @param path The bitmaps file.
+     * @param termSet The terms that the bitmaps must be for.
+     * @param indexPath The index file that the bitmaps must be for.
+     * @return The bitmaps or null if there are none at path or if they are not
+     * of the current version for termSet and the index file as it is now.
+     * @throws IOException If encountered.
+     */
+    public static Text_TermBitmaps open(Path path, Text_TermSet termSet,
+            Path indexPath) throws IOException {
+        if (!Files.exists(path) || !Files.exists(indexPath)) {
+            return null;
+        }
+        try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = fc.size();
+            if (size < 12 || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer b = fc.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (b.getInt() != MAGIC || b.getInt() != VERSION
+                    || b.getInt((int) size - 4) != Text_ArticleStore.END) {
+                return null;
+            }
+            if (b.getLong() != Files.size(indexPath)
+                    || b.getLong() != Files.getLastModifiedTime(indexPath)
+                            .toMillis()) {
+                return null;
+            }
+            String[] terms = getTerms(termSet);
+            if (b.getInt() != terms.length) {
+                return null;
+            }
+            byte[] buf = new byte[8192];
+            for (String term : terms) {
+                buf = Text_ArticleStore.ensureCapacity(buf, b);
+                if (!Text_ArticleStore.readString(b, buf).equals(term)) {
+                    return null;
+                }
+            }
+            int na = b.getInt();
+            Text_Bitmap[] bitmaps = new Text_Bitmap[terms.length];
+            for (int t = 0; t < terms.length; t++) {
+                bitmaps[t] = Text_Bitmap.read(b);
+            }
+            return new Text_TermBitmaps(terms, na, bitmaps);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException ex) {
+            throw new IOException("Corrupt term bitmaps " + path, ex);
+        }
+    }
+
+    /**
+     * Writes the bitmaps to path via a temporary file.
+     *
+     * @param path The bitmaps file.
+     * @param indexPath The index file the bitmaps are for.
+     * @throws IOException If encountered.
+     */
+    public void write(Path path, Path indexPath) throws IOException {
+        Files.createDirectories(path.getParent());
+        Path tmp = Files.createTempFile(path.getParent(),
+                path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream dos = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                dos.writeInt(MAGIC);
+                dos.writeInt(VERSION);
+                dos.writeLong(Files.size(indexPath));
+                dos.writeLong(Files.getLastModifiedTime(indexPath).toMillis());
+                dos.writeInt(terms.length);
+                for (String term : terms) {
+                    Text_ArticleStore.writeString(dos, term);
+                }
+                dos.writeInt(numberOfArticles);
+                for (Text_Bitmap bitmap : bitmaps) {
+                    bitmap.write(dos);
+                }
+                dos.writeInt(Text_ArticleStore.END);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * @return The number of articles.
+     */
+    public int getNumberOfArticles() {
+        return numberOfArticles;
+    }
+
+    /**
+     * @param t The term id.
+     * @return The ids of the articles that contain the term. This must not be
+     * modified.
+     */
+    public Text_Bitmap get(int t) {
+        return bitmaps[t];
+    }
+
+    /**
+     * @param t The term id.
+     * @return The number of articles that contain the term.
+     */
+    public int getArticleCount(int t) {
+        return bitmaps[t].getCardinality();
+    }
+
+    /**
+     * @param t The term id.
+     * @param articles The ids of the articles to count within, e.g. those in
+     * a date range.
+     * @return The number of articles in articles that contain the term.
+     */
+    public int getArticleCount(int t, Text_Bitmap articles) {
+        return bitmaps[t].andCardinality(articles);
+    }
+
+    /**
+     * @param ts The term ids.
+     * @return The ids of the articles that contain all the terms.
+     */
+    public Text_Bitmap getAll(int... ts) {
+        Text_Bitmap r = Text_Bitmap.orAll(bitmaps[ts[0]]);
+        for (int i = 1; i < ts.length; i++) {
+            r = r.and(bitmaps[ts[i]]);
+        }
+        return r;
+    }
+
+    /**
+     * @param ts The term ids.
+     * @return The ids of the articles that contain any of the terms.
+     */
+    public Text_Bitmap getAny(int... ts) {
+        Text_Bitmap[] bs = new Text_Bitmap[ts.length];
+        for (int i = 0; i < ts.length; i++) {
+            bs[i] = bitmaps[ts[i]];
+        }
+        return Text_Bitmap.orAll(bs);
+    }
+}
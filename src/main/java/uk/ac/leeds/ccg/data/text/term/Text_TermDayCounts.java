@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.term;
+
+import java.time.DayOfWeek;
+
+/**
+ * For counting by term and day of week. Counts are held in a single primitive
+ * array indexed by term id and {@link DayOfWeek#ordinal()} so adding to a
+ * count does not box or allocate. Instances for the same number of terms can
+ * be merged using {@link #add(Text_TermDayCounts)}.
+ */
+public class Text_TermDayCounts {
+
+    /**
+     * The number of days in a week.
+     */
+    static final int DAYS = 7;
+
+    /**
+     * The number of terms.
+     */
+    final int n;
+
+    /**
+     * The counts. The count for term id i on day d is at index
+     * {@code i * DAYS + d.ordinal()}.
+     */
+    final int[] counts;
+
+    /**
+     * Create a new instance with all counts zero.
+     *
+     * @param n The number of terms.
+     */
+    public Text_TermDayCounts(int n) {
+        this.n = n;
+        counts = new int[n * DAYS];
+    }
+
+    /**
+     * Create a new instance with the same counts as c.
+     *
+     * @param c The counts to copy.
+     */
+    public Text_TermDayCounts(Text_TermDayCounts c) {
+        this.n = c.n;
+        counts = c.counts.clone();
+    }
+
+    /**
+     * @return The number of terms.
+     */
+    public int getN() {
+        return n;
+    }
+
+    /**
+     * Adds count to the count for term id i on day.
+     *
+     * @param i The term id.
+     * @param day The day.
+     * @param count The count to add.
+     */
+    public void add(int i, DayOfWeek day, int count) {
+        counts[i * DAYS + day.ordinal()] += count;
+    }
+
+    /**
+     * Adds the counts in c to these counts.
+     *
+     * @param c The counts to add. This must be for the same number of terms.
+     * @return this
+     */
+    public Text_TermDayCounts add(Text_TermDayCounts c) {
+        if (c.n != n) {
+            throw new IllegalArgumentException("Expecting counts for " + n
+                    + " terms, but got counts for " + c.n + " terms.");
+        }
+        for (int x = 0; x < counts.length; x++) {
+            counts[x] += c.counts[x];
+        }
+        return this;
+    }
+
+    /**
+     * @param i The term id.
+     * @param day The day.
+     * @return The count for term id i on day.
+     */
+    public int get(int i, DayOfWeek day) {
+        return counts[i * DAYS + day.ordinal()];
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.term;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * An Aho-Corasick automaton for counting many terms in a single pass over a
+ * text. The automaton is compiled once from the terms and can then be used to
+ * count the terms in any number of texts.
+ *
+ * The patterns matched are the variants of each {@link Text_TermQuery}. The
+ * count for a term is the sum of the counts of its variants, and the count for
+ * a pattern is what {@code text.split(pattern).length - 1} returns, so counts
+ * are the same as those calculated by splitting the text for each pattern in
+ * turn. In particular matches of a pattern do not overlap and matches at the
+ * very end of the text are discounted in the same way that split discards
+ * trailing empty strings.
+ *
+ * Instances are immutable once constructed and so can be shared by threads.
+ */
+public class Text_TermMatcher {
+
+    /**
+     * The number of terms.
+     */
+    final int n;
+
+    /**
+     * The distinct pattern strings.
+     */
+    final String[] patterns;
+
+    /**
+     * The length of each pattern.
+     */
+    final int[] patternLengths;
+
+    /**
+     * For each term, the index of each of the patterns that it is made up
+     * from. A pattern index can appear more than once for a term (e.g. where
+     * an alternative already has a capitalised first letter) and is then
+     * counted more than once.
+     */
+    final int[][] termPatterns;
+
+    /**
+     * For mapping a char to a symbol in the automaton alphabet. Symbol 0 is
+     * for any char that is not in any pattern.
+     */
+    final char[] symbols;
+
+    /**
+     * The size of the automaton alphabet.
+     */
+    final int alphabetSize;
+
+    /**
+     * The transition table of the automaton with alphabetSize entries for
+     * each state.
+     */
+    final int[] delta;
+
+    /**
+     * For each state, the indexes of the patterns that end in that state.
+     */
+    final int[][] outputs;
+
+    /**
+     * Create a new instance.
+     *
+     * @param queries The terms indexed by id.
+     */
+    public Text_TermMatcher(Text_TermQuery[] queries) {
+        this(getVariants(queries));
+    }
+
+    /**
+     * Create a new instance where each term is a single pattern.
+     *
+     * @param terms The terms indexed by id.
+     */
+    public Text_TermMatcher(String... terms) {
+        this(getVariants(terms));
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param termVariants The patterns for each term indexed by term id.
+     */
+    private Text_TermMatcher(String[][] termVariants) {
+        n = termVariants.length;
+        /**
+         * Get the patterns for each term.
+         */
+        HashMap<String, Integer> patternIndexes = new HashMap<>();
+        ArrayList<String> ps = new ArrayList<>();
+        termPatterns = new int[n][];
+        for (int t = 0; t < n; t++) {
+            String[] variants = termVariants[t];
+            int[] tps = new int[variants.length];
+            for (int v = 0; v < variants.length; v++) {
+                tps[v] = getPatternIndex(patternIndexes, ps, variants[v]);
+            }
+            termPatterns[t] = tps;
+        }
+        patterns = ps.toArray(new String[ps.size()]);
+        patternLengths = new int[patterns.length];
+        /**
+         * Initialise the alphabet.
+         */
+        symbols = new char[Character.MAX_VALUE + 1];
+        int a = 1;
+        for (int p = 0; p < patterns.length; p++) {
+            String s = patterns[p];
+            patternLengths[p] = s.length();
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (symbols[c] == 0) {
+                    symbols[c] = (char) a;
+                    a++;
+                }
+            }
+        }
+        alphabetSize = a;
+        /**
+         * Build the trie.
+         */
+        int[] d = new int[16 * alphabetSize];
+        Arrays.fill(d, -1);
+        ArrayList<ArrayList<Integer>> ends = new ArrayList<>();
+        ends.add(new ArrayList<>());
+        int states = 1;
+        for (int p = 0; p < patterns.length; p++) {
+            String s = patterns[p];
+            int state = 0;
+            for (int i = 0; i < s.length(); i++) {
+                int x = state * alphabetSize + symbols[s.charAt(i)];
+                if (d[x] == -1) {
+                    if ((states + 1) * alphabetSize > d.length) {
+                        int l = d.length;
+                        d = Arrays.copyOf(d, l * 2);
+                        Arrays.fill(d, l, d.length, -1);
+                    }
+                    d[x] = states;
+                    ends.add(new ArrayList<>());
+                    states++;
+                }
+                state = d[x];
+            }
+            ends.get(state).add(p);
+        }
+        delta = Arrays.copyOf(d, states * alphabetSize);
+        /**
+         * Add failure transitions and outputs breadth first so that the
+         * transitions and outputs of the failure state of a state are complete
+         * before they are needed.
+         */
+        outputs = new int[states][];
+        int[] fail = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        outputs[0] = toArray(ends.get(0), null);
+        for (int c = 0; c < alphabetSize; c++) {
+            if (delta[c] == -1) {
+                delta[c] = 0;
+            } else {
+                fail[delta[c]] = 0;
+                queue.add(delta[c]);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs[state] = toArray(ends.get(state), outputs[fail[state]]);
+            int so = state * alphabetSize;
+            int fo = fail[state] * alphabetSize;
+            for (int c = 0; c < alphabetSize; c++) {
+                int next = delta[so + c];
+                if (next == -1) {
+                    delta[so + c] = delta[fo + c];
+                } else {
+                    fail[next] = delta[fo + c];
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    private static String[][] getVariants(Text_TermQuery[] queries) {
+        String[][] r = new String[queries.length][];
+        for (int t = 0; t < queries.length; t++) {
+            r[t] = queries[t].variants;
+        }
+        return r;
+    }
+
+    private static String[][] getVariants(String[] terms) {
+        String[][] r = new String[terms.length][];
+        for (int t = 0; t < terms.length; t++) {
+            r[t] = new String[]{terms[t]};
+        }
+        return r;
+    }
+
+    private static int getPatternIndex(HashMap<String, Integer> patternIndexes,
+            ArrayList<String> ps, String s) {
+        Integer r = patternIndexes.get(s);
+        if (r == null) {
+            r = ps.size();
+            patternIndexes.put(s, r);
+            ps.add(s);
+        }
+        return r;
+    }
+
+    private static int[] toArray(ArrayList<Integer> own, int[] inherited) {
+        int l = inherited == null ? 0 : inherited.length;
+        int[] r = new int[own.size() + l];
+        for (int i = 0; i < own.size(); i++) {
+            r[i] = own.get(i);
+        }
+        if (l > 0) {
+            System.arraycopy(inherited, 0, r, own.size(), l);
+        }
+        return r;
+    }
+
+    /**
+     * @return The number of terms.
+     */
+    public int getN() {
+        return n;
+    }
+
+    /**
+     * @return The number of distinct patterns.
+     */
+    public int getNumberOfPatterns() {
+        return patterns.length;
+    }
+
+    /**
+     * @param p The index of a pattern.
+     * @return The pattern with index p.
+     */
+    public String getPattern(int p) {
+        return patterns[p];
+    }
+
+    /**
+     * Counts all the patterns in text in a single pass.
+     *
+     * @param text The text to count patterns in.
+     * @return The count for each pattern.
+     */
+    public int[] getPatternCounts(CharSequence text) {
+        int np = patterns.length;
+        int[] counts = new int[np];
+        int[] lastEnds = new int[np];
+        int[] emptyRuns = new int[np];
+        int length = text.length();
+        int state = 0;
+        for (int i = 0; i < length; i++) {
+            state = delta[state * alphabetSize + symbols[text.charAt(i)]];
+            int[] out = outputs[state];
+            for (int o = 0; o < out.length; o++) {
+                int p = out[o];
+                int start = i + 1 - patternLengths[p];
+                if (start >= lastEnds[p]) {
+                    /**
+                     * Keep track of how many consecutive empty strings a
+                     * split would have given immediately before this match.
+                     */
+                    if (start == lastEnds[p]) {
+                        emptyRuns[p]++;
+                    } else {
+                        emptyRuns[p] = 0;
+                    }
+                    counts[p]++;
+                    lastEnds[p] = i + 1;
+                }
+            }
+        }
+        /**
+         * Discount trailing empty strings as split does.
+         */
+        for (int p = 0; p < np; p++) {
+            if (counts[p] > 0 && lastEnds[p] == length) {
+                counts[p] -= 1 + emptyRuns[p];
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Counts all the terms in text in a single pass.
+     *
+     * @param text The text to count terms in.
+     * @return The count for each term.
+     */
+    public int[] getTermCounts(CharSequence text) {
+        return getTermCounts(getPatternCounts(text));
+    }
+
+    /**
+     * @param pcs The count for each pattern.
+     * @return The count for each term.
+     */
+    public int[] getTermCounts(int[] pcs) {
+        int[] r = new int[n];
+        for (int t = 0; t < n; t++) {
+            int[] tps = termPatterns[t];
+            int c = 0;
+            for (int i = 0; i < tps.length; i++) {
+                c += pcs[tps[i]];
+            }
+            r[t] = c;
+        }
+        return r;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.term;
+
+import uk.ac.leeds.ccg.generic.lang.Generic_String;
+
+/**
+ * A compiled term. A term may be several alternatives separated by " OR ".
+ * Each alternative is matched as given and with a capitalised first letter,
+ * and these are the variants of the term. The count for a term is the sum of
+ * the counts of its variants.
+ */
+public class Text_TermQuery {
+
+    /**
+     * The term id. Term ids are numbered from 0 in the order in which terms
+     * are added to a term set.
+     */
+    final int id;
+
+    /**
+     * The term as given.
+     */
+    final String term;
+
+    /**
+     * The term type id.
+     */
+    final int typeId;
+
+    /**
+     * The term type.
+     */
+    final String type;
+
+    /**
+     * The alternatives.
+     */
+    final String[] alternatives;
+
+    /**
+     * The variants. For each alternative there are two variants: first the
+     * alternative with a capitalised first letter; then the alternative as
+     * given. These can be the same, in which case both are counted.
+     */
+    final String[] variants;
+
+    /**
+     * Create a new instance.
+     *
+     * @param id The term id.
+     * @param term The term.
+     * @param typeId The term type id.
+     * @param type The term type.
+     */
+    public Text_TermQuery(int id, String term, int typeId, String type) {
+        this.id = id;
+        this.term = term;
+        this.typeId = typeId;
+        this.type = type;
+        alternatives = getAlternatives(term);
+        variants = new String[alternatives.length * 2];
+        for (int a = 0; a < alternatives.length; a++) {
+            variants[2 * a] = Generic_String.getCapitalFirstLetter(
+                    alternatives[a]);
+            variants[2 * a + 1] = alternatives[a];
+        }
+    }
+
+    /**
+     * @param term The term.
+     * @return The alternatives in term separated by " OR ".
+     */
+    static String[] getAlternatives(String term) {
+        if (term.contains(" OR ")) {
+            return term.split(" OR ");
+        }
+        return new String[]{term};
+    }
+
+    /**
+     * @return The term id.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return The term as given.
+     */
+    public String getTerm() {
+        return term;
+    }
+
+    /**
+     * @return The term type id.
+     */
+    public int getTypeId() {
+        return typeId;
+    }
+
+    /**
+     * @return The term type.
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return A copy of the alternatives.
+     */
+    public String[] getAlternatives() {
+        return alternatives.clone();
+    }
+
+    /**
+     * @return A copy of the variants.
+     */
+    public String[] getVariants() {
+        return variants.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "Text_TermQuery(id=" + id + ", term=" + term + ", type=" + type
+                + ")";
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.term;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.TreeMap;
+
+/**
+ * A compiled set of terms. This is built once for a run from the terms keyed
+ * by term type. Each term is given a stable int id in the order of the term
+ * types and the order of the terms within each type. The set holds a
+ * {@link Text_TermMatcher} for counting all the terms in a text in a single
+ * pass, so that term strings need not be looked at when processing articles.
+ */
+public class Text_TermSet {
+
+    /**
+     * The terms indexed by id.
+     */
+    final Text_TermQuery[] queries;
+
+    /**
+     * The term types indexed by type id.
+     */
+    final String[] types;
+
+    /**
+     * For looking up the first id of a term.
+     */
+    final HashMap<String, Integer> ids;
+
+    /**
+     * For counting all terms in a single pass.
+     */
+    final Text_TermMatcher matcher;
+
+    /**
+     * Create a new instance.
+     *
+     * @param allterms The terms keyed by term type id.
+     * @param termTypes The term types keyed by term type id.
+     */
+    public Text_TermSet(TreeMap<Integer, ArrayList<String>> allterms,
+            HashMap<Integer, String> termTypes) {
+        ArrayList<Text_TermQuery> qs = new ArrayList<>();
+        ids = new HashMap<>();
+        types = new String[allterms.size()];
+        int typeId = 0;
+        Iterator<Integer> ite = allterms.keySet().iterator();
+        while (ite.hasNext()) {
+            Integer key = ite.next();
+            String type = termTypes.get(key);
+            types[typeId] = type;
+            Iterator<String> ite2 = allterms.get(key).iterator();
+            while (ite2.hasNext()) {
+                String term = ite2.next();
+                int id = qs.size();
+                qs.add(new Text_TermQuery(id, term, typeId, type));
+                ids.putIfAbsent(term, id);
+            }
+            typeId++;
+        }
+        queries = qs.toArray(new Text_TermQuery[qs.size()]);
+        matcher = new Text_TermMatcher(queries);
+    }
+
+    /**
+     * @return The number of terms.
+     */
+    public int getN() {
+        return queries.length;
+    }
+
+    /**
+     * @param id The term id.
+     * @return The term with the given id.
+     */
+    public Text_TermQuery get(int id) {
+        return queries[id];
+    }
+
+    /**
+     * @param term The term.
+     * @return The id of the first term equal to term or -1 if there is no
+     * such term.
+     */
+    public int getId(String term) {
+        Integer r = ids.get(term);
+        if (r == null) {
+            return -1;
+        }
+        return r;
+    }
+
+    /**
+     * @return The number of term types.
+     */
+    public int getNumberOfTypes() {
+        return types.length;
+    }
+
+    /**
+     * @param typeId The term type id.
+     * @return The term type.
+     */
+    public String getType(int typeId) {
+        return types[typeId];
+    }
+
+    /**
+     * @return The matcher for counting all terms in a single pass.
+     */
+    public Text_TermMatcher getMatcher() {
+        return matcher;
+    }
+}
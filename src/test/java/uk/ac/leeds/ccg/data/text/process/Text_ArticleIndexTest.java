@@ -0,0 +1,159 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.process;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import uk.ac.leeds.ccg.data.text.io.Text_Source;
+import uk.ac.leeds.ccg.data.text.term.Text_TermMatcher;
+
+/**
+ * Tests for {@link Text_ArticleIndex}.
+ */
+public class Text_ArticleIndexTest {
+
+    /**
+     * A source with no content for building an index.
+     */
+    static class Source extends Text_Source {
+
+        Source(String id) {
+            super(id);
+        }
+
+        @Override
+        public long length() {
+            return 0L;
+        }
+
+        @Override
+        public long lastModified() {
+            return 0L;
+        }
+
+        @Override
+        public InputStream newInputStream() throws IOException {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+    }
+
+    /**
+     * @return A body as from {@link Text_ArticleParser}: words separated by
+     * single spaces with a space at the start and at the end.
+     */
+    static String getBody(Random random) {
+        StringBuilder sb = new StringBuilder(" ");
+        int nw = random.nextInt(12);
+        for (int w = 0; w < nw; w++) {
+            sb.append(getWord(random)).append(' ');
+        }
+        return sb.toString();
+    }
+
+    static String getWord(Random random) {
+        int l = 1 + random.nextInt(3);
+        StringBuilder sb = new StringBuilder(l);
+        for (int i = 0; i < l; i++) {
+            sb.append("ab".charAt(random.nextInt(2)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return A pattern that can be counted using an index (see
+     * {@link Text_ArticleIndex#canCount}): words separated by single spaces
+     * optionally with a space at the start or the end.
+     */
+    static String getPattern(Random random) {
+        String r = getWord(random);
+        int nw = random.nextInt(3);
+        for (int w = 0; w < nw; w++) {
+            r += " " + getWord(random);
+        }
+        if (random.nextInt(3) == 0) {
+            r = " " + r;
+        }
+        if (random.nextInt(3) == 0) {
+            r += " ";
+        }
+        return r;
+    }
+
+    /**
+     * Test of getArticlePatternCounts method, of class Text_ArticleIndex,
+     * against counting the patterns in the article bodies with the matcher.
+     *
+     * @throws IOException If encountered.
+     */
+    @Test
+    public void testGetArticlePatternCounts() throws IOException {
+        List<String> papers = Arrays.asList("The Guardian");
+        Random random = new Random(0);
+        Path path = Files.createTempFile("Text_ArticleIndexTest", ".idx");
+        try {
+            for (int i = 0; i < 500; i++) {
+                List<Text_Source> files = new ArrayList<>();
+                files.add(new Source("dir/file0.htm"));
+                files.add(new Source("dir/file1.htm"));
+                Text_ArticleIndex.Builder builder
+                        = new Text_ArticleIndex.Builder(papers, files);
+                ArrayList<String> bodies = new ArrayList<>();
+                for (int f = 0; f < files.size(); f++) {
+                    int na = 1 + random.nextInt(20);
+                    for (int a = 0; a < na; a++) {
+                        String body = getBody(random);
+                        bodies.add(body);
+                        builder.add(f, new Text_Article(papers.get(0),
+                                LocalDate.of(2016, 1, 1 + a), "title",
+                                "section", "length", body));
+                    }
+                }
+                builder.write(path);
+                Text_ArticleIndex index = Text_ArticleIndex.open(path, papers,
+                        files);
+                assertEquals(bodies.size(), index.getNumberOfArticles());
+                String[] patterns = new String[1 + random.nextInt(6)];
+                for (int p = 0; p < patterns.length; p++) {
+                    patterns[p] = getPattern(random);
+                }
+                Text_TermMatcher matcher = new Text_TermMatcher(patterns);
+                int[][] articlePatternCounts
+                        = index.getArticlePatternCounts(matcher);
+                int[] zeros = new int[matcher.getNumberOfPatterns()];
+                for (int a = 0; a < bodies.size(); a++) {
+                    int[] counts = articlePatternCounts[a] == null ? zeros
+                            : articlePatternCounts[a];
+                    assertArrayEquals(Arrays.toString(patterns) + "|"
+                            + bodies.get(a),
+                            matcher.getPatternCounts(bodies.get(a)), counts);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
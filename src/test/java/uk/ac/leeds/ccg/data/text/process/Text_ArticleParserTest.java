@@ -0,0 +1,200 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.process;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.TextNode;
+import org.junit.Test;
+import uk.ac.leeds.ccg.data.text.io.Text_FileSource;
+import uk.ac.leeds.ccg.data.text.term.Text_TermSet;
+
+/**
+ * Tests for {@link Text_ArticleParser}.
+ */
+public class Text_ArticleParserTest {
+
+    /**
+     * Text values as they appear in article bodies.
+     */
+    static final String[][] ARTICLES = {
+        {"The UK's response to the crisis, he said, was \"too little; too late\"."},
+        {"Refugees' camps: Turkey, Lebanon and Jordan...", "Why?!",
+            "What next?? Nobody knows!!!"},
+        {"  Double  spaces   and  trailing space ", " ", "", "'", "\"\""},
+        {"It's 10.30 a.m. - 'Syria' and \"Assad\" , ; : . ? !"},
+        {"Erdoğan said: «Non-ASCII text» – and “curly” quotes ‘stay’."},
+        {"No punctuation at all", "Second value", "Third value"},
+        {"Mr. O'Neill's dog's bone", "...", "'s", "s'"}
+    };
+
+    /**
+     * Builds the body of an article from values in the way the parser did
+     * before {@link Text_ArticleParser#appendNormalised(String, StringBuilder)}
+     * and {@link Text_ArticleParser#removeDoubleSpaces(StringBuilder)}.
+     */
+    static String getArticleUsingRegex(String[] values) {
+        String article = " ";
+        for (String value : values) {
+            value = value.replaceAll("\\'", " ");
+            value = value.replaceAll("\"", " ");
+            value = value.replaceAll("\'", " ");
+            value = value.replaceAll("\\.", " .");
+            value = value.replaceAll("\\?", " ?");
+            value = value.replaceAll("\\!", " !");
+            value = value.replaceAll("\\,", " ,");
+            value = value.replaceAll("\\;", " ;");
+            value = value.replaceAll("\\:", " :");
+            article += value + " ";
+        }
+        while (article.contains("  ")) {
+            article = article.replaceAll("  ", " ");
+        }
+        return article;
+    }
+
+    /**
+     * Builds the body of an article from values as the parser does.
+     */
+    static String getArticle(String[] values) {
+        StringBuilder article = new StringBuilder();
+        article.append(' ');
+        for (String value : values) {
+            Text_ArticleParser.appendNormalised(value, article);
+            article.append(' ');
+        }
+        Text_ArticleParser.removeDoubleSpaces(article);
+        return article.toString();
+    }
+
+    /**
+     * Test of appendNormalised and removeDoubleSpaces methods, of class
+     * Text_ArticleParser.
+     */
+    @Test
+    public void testNormalise() {
+        for (String[] values : ARTICLES) {
+            assertEquals(getArticleUsingRegex(values), getArticle(values));
+        }
+        /**
+         * Every single ASCII char and every pair of chars from a set that
+         * includes all the punctuation that is normalised.
+         */
+        for (char c = 0; c < 128; c++) {
+            String[] values = {"a" + c + "b", String.valueOf(c)};
+            assertEquals(getArticleUsingRegex(values), getArticle(values));
+        }
+        String cs = " \t'\".?!,;:a-é";
+        for (int i = 0; i < cs.length(); i++) {
+            for (int j = 0; j < cs.length(); j++) {
+                String[] values = {"" + cs.charAt(i) + cs.charAt(j),
+                    "x" + cs.charAt(i) + " " + cs.charAt(j) + "y"};
+                assertEquals(getArticleUsingRegex(values), getArticle(values));
+            }
+        }
+    }
+
+    /**
+     * Gets the bodies of the articles in a LexisNexis file in the way the
+     * parser did before it was streamed: the values are the text nodes of the
+     * div after the one that has the length in it.
+     */
+    static List<String> getArticlesUsingRegex(Path path) throws Exception {
+        Document doc = Jsoup.parse(path.toFile(), "UTF-8");
+        List<String> r = new ArrayList<>();
+        for (Element span : doc.select("span")) {
+            if (!span.ownText().startsWith("LENGTH:")) {
+                continue;
+            }
+            Element div = span.parent().parent().nextElementSibling();
+            while (!div.tagName().equals("div")) {
+                div = div.nextElementSibling();
+            }
+            List<String> values = new ArrayList<>();
+            for (Element e : div.getAllElements()) {
+                for (TextNode t : e.textNodes()) {
+                    String value = t.getWholeText();
+                    if (!value.equals("\n")) {
+                        values.add(value);
+                    }
+                }
+            }
+            r.add(getArticleUsingRegex(values.toArray(new String[0])));
+        }
+        return r;
+    }
+
+    /**
+     * Test of extract method, of class Text_ArticleParser, on a LexisNexis
+     * file. The bodies parsed streaming, not streaming and not streaming in
+     * parts are compared with those got using regular expressions, and the
+     * term counts from {@link Text_TermSet#getMatcher()} with those got using
+     * {@link Text_Processor2#getTermCount(String, String)}.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testExtract() throws Exception {
+        Text_Processor2 p = new Text_Processor2(null);
+        p.papers = new ArrayList<>(Arrays.asList("The Guardian",
+                "The Express", "DAILY MAIL (London)"));
+        Object[] allTermsAndTypes = p.getAllTermsFelicity();
+        TreeMap<Integer, ArrayList<String>> allterms
+                = (TreeMap<Integer, ArrayList<String>>) allTermsAndTypes[0];
+        HashMap<Integer, String> termTypes
+                = (HashMap<Integer, String>) allTermsAndTypes[1];
+        Text_TermSet termSet = new Text_TermSet(allterms, termTypes);
+        Path path = Paths.get(Text_ArticleParserTest.class
+                .getResource("Text_ArticleParserTest.htm").toURI());
+        Text_FileSource input = new Text_FileSource(path,
+                "LexisNexis/" + path.getFileName());
+        List<String> expected = getArticlesUsingRegex(path);
+        assertEquals(3, expected.size());
+        for (int mode = 0; mode < 3; mode++) {
+            boolean streaming = mode == 0;
+            p.splitBytes = mode == 2 ? 1 : 0;
+            List<Text_Article> articles = new ArrayList<>();
+            assertTrue(new Text_ArticleParser(p).extract(input, streaming,
+                    articles::add));
+            assertEquals(expected.size(), articles.size());
+            for (int i = 0; i < articles.size(); i++) {
+                String body = articles.get(i).body;
+                assertEquals(expected.get(i), body);
+                int[] counts = termSet.getMatcher().getTermCounts(body);
+                int t = 0;
+                int total = 0;
+                for (ArrayList<String> terms : allterms.values()) {
+                    for (String term : terms) {
+                        int count = p.getTermCount(term, expected.get(i));
+                        assertEquals(term, count, counts[t++]);
+                        total += count;
+                    }
+                }
+                assertEquals(counts.length, t);
+                assertTrue(total > 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2021 Andy Turner, University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.data.text.term;
+
+import java.util.Random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import uk.ac.leeds.ccg.generic.lang.Generic_String;
+
+/**
+ * Tests for {@link Text_TermMatcher}.
+ */
+public class Text_TermMatcherTest {
+
+    /**
+     * Texts with matches that overlap, are next to each other and are at the
+     * start and end of the text, which are the cases where counting the same
+     * as split is most difficult.
+     */
+    static final String[] TEXTS = {"", "a", "aa", "aaa", "aaaa", " a", "a ",
+        " a a ", "aba", "abab", "ababa", "A a", "Aa aA", " Refugee crisis. ",
+        "refugees refugee Refugee", "the crisis crisis ", "crisis crisis"};
+
+    /**
+     * Terms that include alternatives and terms that already have a capital
+     * first letter.
+     */
+    static final String[] TERMS = {"a", "aa", "A", "ab", "ba", "a a", " a",
+        "a ", "refugee", "crisis", "refugee OR crisis", "Refugee", "a OR aa"};
+
+    /**
+     * Counts term in text in the way that Text_Processor2 did before
+     * {@link Text_TermMatcher}: by splitting text on each alternative in term
+     * and on each alternative with a capitalised first letter.
+     */
+    static int getTermCountUsingSplit(String term, String text) {
+        int result = 0;
+        if (term.contains(" OR ")) {
+            for (String s : term.split(" OR ")) {
+                result += getTermCount0UsingSplit(s, text);
+            }
+        } else {
+            result += getTermCount0UsingSplit(term, text);
+        }
+        return result;
+    }
+
+    static int getTermCount0UsingSplit(String term, String text) {
+        int result = 0;
+        String s = Generic_String.getCapitalFirstLetter(term);
+        result += text.split(s).length - 1;
+        result += text.split(term).length - 1;
+        return result;
+    }
+
+    static Text_TermMatcher getMatcher(String[] terms) {
+        Text_TermQuery[] queries = new Text_TermQuery[terms.length];
+        for (int t = 0; t < terms.length; t++) {
+            queries[t] = new Text_TermQuery(t, terms[t], 0, "type");
+        }
+        return new Text_TermMatcher(queries);
+    }
+
+    static void assertCountsUsingSplit(String[] terms, String text) {
+        int[] expected = new int[terms.length];
+        for (int t = 0; t < terms.length; t++) {
+            expected[t] = getTermCountUsingSplit(terms[t], text);
+        }
+        assertArrayEquals(text, expected, getMatcher(terms).getTermCounts(text));
+    }
+
+    static String getRandom(Random random, String chars, int minLength,
+            int maxLength) {
+        int l = minLength + random.nextInt(maxLength - minLength + 1);
+        StringBuilder sb = new StringBuilder(l);
+        for (int i = 0; i < l; i++) {
+            sb.append(chars.charAt(random.nextInt(chars.length())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Test of getTermCounts method, of class Text_TermMatcher, against
+     * splitting the text for each term.
+     */
+    @Test
+    public void testGetTermCounts() {
+        for (String text : TEXTS) {
+            assertCountsUsingSplit(TERMS, text);
+        }
+        /**
+         * Random terms with alternatives and words that may already have a
+         * capital first letter, and random texts of the same chars.
+         */
+        Random random = new Random(0);
+        for (int i = 0; i < 20000; i++) {
+            String[] terms = new String[1 + random.nextInt(5)];
+            for (int t = 0; t < terms.length; t++) {
+                String term = "";
+                int na = 1 + random.nextInt(3);
+                for (int a = 0; a < na; a++) {
+                    if (a > 0) {
+                        term += " OR ";
+                    }
+                    term += getRandom(random, "abA", 1, 3);
+                    if (random.nextInt(4) == 0) {
+                        term += " " + getRandom(random, "abA", 1, 2);
+                    }
+                }
+                terms[t] = term;
+            }
+            assertCountsUsingSplit(terms, getRandom(random, "aAb  ", 0, 40));
+        }
+    }
+
+    /**
+     * Test of getPatternCounts method, of class Text_TermMatcher, against
+     * splitting the text for each pattern.
+     */
+    @Test
+    public void testGetPatternCounts() {
+        Random random = new Random(1);
+        for (int i = 0; i < 20000; i++) {
+            String[] patterns = new String[1 + random.nextInt(5)];
+            for (int p = 0; p < patterns.length; p++) {
+                patterns[p] = getRandom(random, "ab ", 1, 4);
+            }
+            String text = getRandom(random, "ab ", 0, 30);
+            Text_TermMatcher matcher = new Text_TermMatcher(patterns);
+            int[] counts = matcher.getPatternCounts(text);
+            for (int p = 0; p < matcher.getNumberOfPatterns(); p++) {
+                String pattern = matcher.getPattern(p);
+                assertEquals(pattern + "|" + text,
+                        text.split(pattern).length - 1, counts[p]);
+            }
+        }
+    }
+}